@@ -0,0 +1,43 @@
+package ch.ludovic_mermod.dfasimulator.benchmarks;
+
+import ch.ludovic_mermod.dfasimulator.logic.DFA;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link DFA#isAccepted(CharSequence)} on a 64 Ki characters input
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class DFABenchmark
+{
+    private static final int INPUT_LENGTH = 1 << 16;
+
+    @Param({"RANDOM", "WORST_CASE"})
+    public Fixtures.Shape shape;
+    @Param({"10", "1000", "100000"})
+    public int            states;
+    @Param({"2", "16", "256"})
+    public int            symbols;
+
+    private DFA    dfa;
+    private String input;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        dfa = Fixtures.dfa(shape, states, symbols);
+        input = Fixtures.input(INPUT_LENGTH, symbols);
+    }
+
+    @Benchmark
+    public boolean isAccepted()
+    {
+        return dfa.isAccepted(input);
+    }
+}
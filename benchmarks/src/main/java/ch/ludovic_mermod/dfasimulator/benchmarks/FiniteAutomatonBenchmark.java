@@ -0,0 +1,46 @@
+package ch.ludovic_mermod.dfasimulator.benchmarks;
+
+import ch.ludovic_mermod.dfasimulator.json.JSONElement;
+import ch.ludovic_mermod.dfasimulator.json.JSONObject;
+import ch.ludovic_mermod.dfasimulator.logic.FiniteAutomaton;
+import ch.ludovic_mermod.dfasimulator.logic.IOManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link FiniteAutomaton#loadJSON(JSONObject)} into an automaton without any MainPane
+ * The loaded automaton is reused across invocations, as loading always starts by clearing it
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class FiniteAutomatonBenchmark
+{
+    @Param({"RANDOM", "WORST_CASE"})
+    public Fixtures.Shape shape;
+    @Param({"10", "1000"})
+    public int            states;
+    @Param({"2", "16"})
+    public int            symbols;
+
+    private JSONObject      json;
+    private FiniteAutomaton finiteAutomaton;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        json = JSONElement.parse(Fixtures.finiteAutomaton(shape, states, symbols).getJSONObject().toString()).getAsJSONObject();
+        finiteAutomaton = new FiniteAutomaton();
+    }
+
+    @Benchmark
+    public FiniteAutomaton loadJSON() throws IOManager.CorruptedFileException
+    {
+        finiteAutomaton.loadJSON(json);
+        return finiteAutomaton;
+    }
+}
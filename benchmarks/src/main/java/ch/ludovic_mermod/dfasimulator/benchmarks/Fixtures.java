@@ -0,0 +1,164 @@
+package ch.ludovic_mermod.dfasimulator.benchmarks;
+
+import ch.ludovic_mermod.dfasimulator.logic.DFA;
+import ch.ludovic_mermod.dfasimulator.logic.FiniteAutomaton;
+import ch.ludovic_mermod.dfasimulator.logic.State;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generate the automata and inputs used by the benchmarks
+ * Everything is derived from a fixed seed, so that all runs measure the same fixtures
+ * <p>
+ * Symbols are taken from U+00C0 onwards, so that up to 256 of them fit in a contiguous range without JSON escapes.
+ */
+public final class Fixtures
+{
+    public static final long SEED = 0x5EEDL;
+
+    private Fixtures()
+    {
+    }
+
+    /**
+     * @param count number of symbols
+     * @return the alphabet of the fixtures with the given number of symbols
+     */
+    public static char[] alphabet(int count)
+    {
+        char[] symbols = new char[count];
+        for (int i = 0; i < count; ++i) symbols[i] = (char) (0xC0 + i);
+        return symbols;
+    }
+
+    /**
+     * Generate a complete DFA
+     *
+     * @param shape  the shape of the transition table
+     * @param states number of states
+     * @param symbols number of symbols
+     * @return the generated DFA, half of its states being accepting
+     */
+    public static DFA dfa(Shape shape, int states, int symbols)
+    {
+        Random random = new Random(SEED);
+        String[] names = new String[states];
+        for (int i = 0; i < states; ++i) names[i] = "q" + i;
+
+        int[] transitions = new int[states * symbols];
+        switch (shape)
+        {
+            case RANDOM ->
+            {
+                for (int i = 0; i < transitions.length; ++i) transitions[i] = random.nextInt(states);
+            }
+            case WORST_CASE ->
+            {
+                // Each symbol follows a different stride along a random cycle through all states:
+                // no state is dead and consecutive steps land far apart in the table
+                int[] cycle = permutation(states, random), position = new int[states];
+                for (int i = 0; i < states; ++i) position[cycle[i]] = i;
+                for (int state = 0; state < states; ++state)
+                    for (int symbol = 0; symbol < symbols; ++symbol)
+                        transitions[state * symbols + symbol] = cycle[(position[state] + 1 + symbol) % states];
+            }
+        }
+
+        return DFA.fromTable(names, alphabet(symbols), transitions, accepting(states, random), 0);
+    }
+
+    /**
+     * Generate a FiniteAutomaton, without any MainPane
+     *
+     * @param shape   RANDOM for one target per transition (a DFA), WORST_CASE for several targets per transition
+     * @param states  number of states
+     * @param symbols number of symbols
+     * @return the generated automaton, half of its states being accepting
+     */
+    public static FiniteAutomaton finiteAutomaton(Shape shape, int states, int symbols)
+    {
+        Random random = new Random(SEED);
+        char[] alphabet = alphabet(symbols);
+        int targets = shape == Shape.WORST_CASE ? Math.min(4, states) : 1;
+
+        FiniteAutomaton finiteAutomaton = new FiniteAutomaton();
+        for (char c : alphabet) finiteAutomaton.alphabet().add(c);
+
+        // States are created directly, as looking them up by name would make the fixture quadratic
+        List<State> list = new ArrayList<>(states);
+        BitSet accepting = accepting(states, random);
+        for (int i = 0; i < states; ++i)
+        {
+            State state = new State(finiteAutomaton);
+            state.nameProperty().set("q" + i);
+            state.isAcceptingProperty().set(accepting.get(i));
+            list.add(state);
+        }
+        finiteAutomaton.states().addAll(list);
+
+        for (State state : list)
+            for (char c : alphabet)
+            {
+                List<State> outputs = new ArrayList<>(targets);
+                while (outputs.size() < targets)
+                {
+                    State target = list.get(random.nextInt(states));
+                    if (!outputs.contains(target)) outputs.add(target);
+                }
+                state.transitionMap().setValue(c, outputs);
+            }
+
+        finiteAutomaton.initialStateProperty().set(list.get(0));
+        return finiteAutomaton;
+    }
+
+    /**
+     * @param length  number of characters
+     * @param symbols number of symbols of the alphabet
+     * @return a random input over the alphabet of the fixtures
+     */
+    public static String input(int length, int symbols)
+    {
+        Random random = new Random(SEED);
+        char[] alphabet = alphabet(symbols);
+        char[] input = new char[length];
+        for (int i = 0; i < length; ++i) input[i] = alphabet[random.nextInt(symbols)];
+        return new String(input);
+    }
+
+    private static BitSet accepting(int states, Random random)
+    {
+        BitSet accepting = new BitSet(states);
+        for (int i = 0; i < states; ++i)
+            if (random.nextBoolean()) accepting.set(i);
+        return accepting;
+    }
+
+    private static int[] permutation(int size, Random random)
+    {
+        int[] permutation = new int[size];
+        for (int i = 0; i < size; ++i) permutation[i] = i;
+        for (int i = size - 1; i > 0; --i)
+        {
+            int j = random.nextInt(i + 1), tmp = permutation[i];
+            permutation[i] = permutation[j];
+            permutation[j] = tmp;
+        }
+        return permutation;
+    }
+
+    public enum Shape
+    {
+        /**
+         * Targets drawn uniformly at random
+         */
+        RANDOM,
+        /**
+         * No dead state and no locality (for DFAs), or several targets per transition (for FiniteAutomata)
+         */
+        WORST_CASE
+    }
+}
@@ -0,0 +1,47 @@
+package ch.ludovic_mermod.dfasimulator.benchmarks;
+
+import ch.ludovic_mermod.dfasimulator.json.JSONElement;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link JSONElement#parse(String)} and {@link JSONElement#toString()} on the JSON of a generated automaton
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class JSONBenchmark
+{
+    @Param({"RANDOM", "WORST_CASE"})
+    public Fixtures.Shape shape;
+    @Param({"10", "1000", "10000"})
+    public int            states;
+    @Param({"2", "16"})
+    public int            symbols;
+
+    private String      text;
+    private JSONElement json;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        text = Fixtures.finiteAutomaton(shape, states, symbols).getJSONObject().toString();
+        json = JSONElement.parse(text);
+    }
+
+    @Benchmark
+    public JSONElement parse()
+    {
+        return JSONElement.parse(text);
+    }
+
+    @Benchmark
+    public String write()
+    {
+        return json.toString();
+    }
+}
@@ -0,0 +1,96 @@
+package ch.ludovic_mermod.dfasimulator.benchmarks;
+
+import ch.ludovic_mermod.dfasimulator.logic.FiniteAutomaton;
+import ch.ludovic_mermod.dfasimulator.logic.Simulation;
+import javafx.beans.property.BooleanProperty;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link Simulation#test(String)} and of a single {@link Simulation#nextSimulationStep()}, which also updates
+ * the observable states
+ * <p>
+ * test keeps the compiled DFA until the automaton changes: {@link #test} measures a cache hit plus the run, and
+ * {@link #testAfterChange} changes the automaton before each call, so that its snapshot and DFA are built again.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SimulationBenchmark
+{
+    private static final int INPUT_LENGTH = 1 << 12;
+
+    @Benchmark
+    public boolean test(TestState state)
+    {
+        return state.simulation.test(state.input);
+    }
+
+    /**
+     * The accepting flag of one state is toggled before each test, which invalidates the snapshot of the automaton
+     */
+    @Benchmark
+    public boolean testAfterChange(TestState state)
+    {
+        BooleanProperty accepting = state.toggled.isAcceptingProperty();
+        accepting.set(!accepting.get());
+        return state.simulation.test(state.input);
+    }
+
+    @Benchmark
+    public void step(StepState state)
+    {
+        if (!state.simulation.isSimulatingProperty().get()) state.simulation.startSimulation(state.input);
+        state.simulation.nextSimulationStep();
+    }
+
+    /**
+     * test only accepts DFAs, so the automata have a single target per transition
+     */
+    @State(Scope.Benchmark)
+    public static class TestState
+    {
+        @Param({"10", "1000", "10000"})
+        public int states;
+        @Param({"2", "16"})
+        public int symbols;
+
+        private Simulation                                 simulation;
+        private String                                     input;
+        // Qualified, as State is also the annotation of JMH
+        private ch.ludovic_mermod.dfasimulator.logic.State toggled;
+
+        @Setup(Level.Trial)
+        public void setup()
+        {
+            FiniteAutomaton finiteAutomaton = Fixtures.finiteAutomaton(Fixtures.Shape.RANDOM, states, symbols);
+            simulation = new Simulation(finiteAutomaton);
+            input = Fixtures.input(INPUT_LENGTH, symbols);
+            toggled = finiteAutomaton.states().get(finiteAutomaton.states().size() - 1);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class StepState
+    {
+        @Param({"RANDOM", "WORST_CASE"})
+        public Fixtures.Shape shape;
+        @Param({"10", "1000", "10000"})
+        public int            states;
+        @Param({"2", "16"})
+        public int            symbols;
+
+        private Simulation simulation;
+        private String     input;
+
+        @Setup(Level.Trial)
+        public void setup()
+        {
+            simulation = new Simulation(Fixtures.finiteAutomaton(shape, states, symbols));
+            input = Fixtures.input(INPUT_LENGTH, symbols);
+        }
+    }
+}
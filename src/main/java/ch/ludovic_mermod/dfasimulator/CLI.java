@@ -0,0 +1,183 @@
+package ch.ludovic_mermod.dfasimulator;
+
+import ch.ludovic_mermod.dfasimulator.logic.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Predicate;
+
+/**
+ * Headless entry point, testing inputs against a saved automaton without starting JavaFX
+ * <p>
+ * Usage: {@code CLI [--files] <automaton> [input files...]}
+ * By default, each line of the input files (or of the standard input if there is none) is an input, and one line
+ * "accept" or "reject" is printed for each of them. With --files, the whole content of each file is an input, and
+ * "accept" or "reject" is printed after its path. Statistics are printed to the standard error.
+ * <p>
+ * This class must not use anything depending on JavaFX (in particular Main and its logger), so that it runs without it
+ * on the classpath.
+ */
+public class CLI
+{
+    private static final String USAGE = "Usage: CLI [--files] <automaton> [input files...]";
+
+    private final PrintWriter out;
+    private final DFA         dfa;
+    private final DFAScanner  scanner;
+    private final NFA         nfa;
+
+    private long inputs, accepted, bytes;
+
+    private CLI(Automaton automaton, PrintWriter out)
+    {
+        this.out = out;
+
+        // The automaton is determinized if needed, the NFA is only used when the DFA would be too large
+        DFA dfa;
+        NFA nfa = null;
+        if (automaton.isDeterministic()) dfa = DFA.fromAutomaton(automaton);
+        else
+        {
+            nfa = NFA.fromAutomaton(automaton);
+            try
+            {
+                dfa = DFA.fromNFA(nfa, DFA.DEFAULT_MAX_STATES);
+                nfa = null;
+            }
+            catch (DFA.TooManyStatesException e)
+            {
+                System.err.println("Warning: " + e.getMessage() + ", inputs are simulated on the NFA");
+                dfa = null;
+            }
+        }
+
+        this.dfa = dfa;
+        this.scanner = dfa == null ? null : new DFAScanner(dfa);
+        this.nfa = nfa;
+    }
+
+    public static void main(String[] args)
+    {
+        List<String> arguments = new ArrayList<>(List.of(args));
+        boolean files = arguments.remove("--files");
+        if (arguments.isEmpty() || arguments.get(0).startsWith("-"))
+        {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        long start = System.nanoTime();
+        PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8)));
+        try
+        {
+            Automaton automaton = Automaton.readFromFile(Path.of(arguments.get(0)));
+            if (automaton.initialIndex() == DFA.NO_STATE) throw new IOManager.CorruptedFileException("The automaton has no initial state");
+
+            CLI cli = new CLI(automaton, out);
+            long loaded = System.nanoTime();
+
+            List<Path> paths = arguments.subList(1, arguments.size()).stream().map(Path::of).toList();
+            if (files) for (Path path : paths) cli.testFile(path);
+            else if (paths.isEmpty()) cli.testLines(new LineReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)));
+            else for (Path path : paths) cli.testLines(path);
+            out.flush();
+
+            long end = System.nanoTime();
+            System.err.printf(Locale.ROOT, "%d states loaded in %.1f ms%n", automaton.stateCount(), (loaded - start) / 1e6);
+            System.err.printf(Locale.ROOT, "%d inputs, %d accepted, %d rejected%n", cli.inputs, cli.accepted, cli.inputs - cli.accepted);
+            System.err.printf(Locale.ROOT, "%d bytes in %.1f ms (%.1f MB/s)%n", cli.bytes, (end - loaded) / 1e6, end == loaded ? 0 : cli.bytes * 1e3 / (end - loaded));
+        }
+        catch (IOManager.CorruptedFileException e)
+        {
+            out.flush();
+            System.err.println("Invalid automaton: " + e.getMessage());
+            System.exit(1);
+        }
+        catch (IOException e)
+        {
+            out.flush();
+            System.err.println("Error: " + e);
+            System.exit(1);
+        }
+    }
+
+    private void testFile(Path path) throws IOException
+    {
+        boolean result;
+        if (scanner != null)
+        {
+            DFAScanner.ScanResult scan = scanner.scanFile(path);
+            bytes += scan.bytes();
+            result = scan.accepted() != 0;
+        }
+        else
+        {
+            bytes += Files.size(path);
+            try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8))
+            {
+                result = nfa.isAccepted(reader);
+            }
+        }
+
+        print(path + "\t", result);
+    }
+
+    private void testLines(Path path) throws IOException
+    {
+        if (scanner == null)
+        {
+            try (LineReader reader = new LineReader(Files.newBufferedReader(path, StandardCharsets.UTF_8)))
+            {
+                testLines(reader);
+            }
+            return;
+        }
+
+        // The scanner only reports the accepted lines, the rejected ones are the lines in between
+        long[] next = {0};
+        DFAScanner.ScanResult scan = scanner.scanLines(path, line ->
+        {
+            for (; next[0] < line; ++next[0]) out.println("reject");
+            out.println("accept");
+            ++next[0];
+        });
+        for (; next[0] < scan.inputs(); ++next[0]) out.println("reject");
+
+        inputs += scan.inputs();
+        accepted += scan.accepted();
+        bytes += scan.bytes();
+    }
+
+    private void testLines(LineReader reader) throws IOException
+    {
+        Predicate<String> test = dfa != null ? dfa::isAccepted : nfa::isAccepted;
+        for (String line; (line = reader.readLine()) != null; )
+        {
+            bytes += utf8Length(line) + 1;
+            print("", test.test(line));
+        }
+    }
+
+    private static long utf8Length(String line)
+    {
+        long length = 0;
+        for (int i = 0; i < line.length(); ++i)
+        {
+            char c = line.charAt(i);
+            length += c < 0x80 ? 1 : c < 0x800 || Character.isSurrogate(c) ? 2 : 3;
+        }
+        return length;
+    }
+
+    private void print(String prefix, boolean result)
+    {
+        ++inputs;
+        if (result) ++accepted;
+        out.println(prefix + (result ? "accept" : "reject"));
+    }
+}
@@ -61,19 +61,37 @@ public class Settings
     }
 
     public static void save(String filename)
+    {
+        store(toProperties(), filename);
+    }
+    /**
+     * Copy the current settings, so that they can be stored outside of the FX thread
+     *
+     * @return the settings in the format of the settings file
+     */
+    public static Properties toProperties()
     {
         Properties properties = new Properties();
         settingsMap.forEach((k, v) -> {
             if (v != null) properties.put(k, v.getJSONObject().toString());
         });
-
+        return properties;
+    }
+    /**
+     * Write settings returned by toProperties to a file
+     *
+     * @param properties the settings to write
+     * @param filename   the settings file
+     */
+    public static void store(Properties properties, String filename)
+    {
         try (Writer writer = new FileWriter(filename))
         {
             properties.store(writer, "");
         }
         catch (IOException e)
         {
-            throw new RuntimeException(e);
+            Main.logger.log(Level.SEVERE, "Could not save settings to " + filename, e);
         }
     }
 
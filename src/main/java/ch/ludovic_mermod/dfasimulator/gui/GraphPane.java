@@ -10,9 +10,12 @@ import ch.ludovic_mermod.dfasimulator.gui.components.SelfEdge;
 import ch.ludovic_mermod.dfasimulator.json.JSONArray;
 import ch.ludovic_mermod.dfasimulator.json.JSONElement;
 import ch.ludovic_mermod.dfasimulator.json.JSONObject;
+import ch.ludovic_mermod.dfasimulator.logic.Automaton;
+import ch.ludovic_mermod.dfasimulator.logic.BinaryFormat;
 import ch.ludovic_mermod.dfasimulator.logic.IOManager;
 import ch.ludovic_mermod.dfasimulator.logic.Simulation;
 import ch.ludovic_mermod.dfasimulator.logic.State;
+import ch.ludovic_mermod.dfasimulator.utils.PropertiesMap;
 import javafx.beans.property.*;
 import javafx.collections.FXCollections;
 import javafx.collections.ListChangeListener;
@@ -25,8 +28,7 @@ import javafx.scene.control.ScrollPane;
 import javafx.scene.layout.Pane;
 import javafx.scene.layout.Region;
 
-import java.util.HashSet;
-import java.util.List;
+import java.util.*;
 import java.util.logging.Level;
 
 /**
@@ -45,6 +47,20 @@ public class GraphPane extends ScrollPane
     private final ObservableSet<Node>       nodes;
     private final ObjectProperty<GraphItem> focusedItem;
 
+    // Edges of each displayed State, by source then target and by target then source, States are compared by identity
+    private final Map<State, Map<State, Edge>>    outgoingEdges;
+    private final Map<State, Map<State, Edge>>    incomingEdges;
+    private final Map<State, TransitionListeners> transitionListeners;
+    private final Map<State, SelfEdge>            selfEdgesByState;
+    // Sources of transitions to States that are not displayed yet, by target
+    private final Map<State, Set<State>>          pendingSources;
+    // Items created while several States are added, inserted into the pane at once, null outside of such a batch
+    private       List<javafx.scene.Node>          batchedEdges, batchedItems;
+    private       List<JSONElement>                batchedNodes;
+    // Items of the States being removed together, removed from the pane at once, null outside of such a batch
+    private       Set<javafx.scene.Node>           removedItems;
+    private       List<JSONElement>                removedNodes;
+
     private MainPane   mainPane;
     private Simulation simulation;
     private Tool       tool;
@@ -62,6 +78,11 @@ public class GraphPane extends ScrollPane
         edges = FXCollections.observableSet(new HashSet<>());
         selfEdges = FXCollections.observableSet(new HashSet<>());
         nodes = FXCollections.observableSet(new HashSet<>());
+        outgoingEdges = new IdentityHashMap<>();
+        incomingEdges = new IdentityHashMap<>();
+        transitionListeners = new IdentityHashMap<>();
+        selfEdgesByState = new IdentityHashMap<>();
+        pendingSources = new IdentityHashMap<>();
         pane = new Pane();
 
         tool = Tool.EDIT;
@@ -86,12 +107,14 @@ public class GraphPane extends ScrollPane
         menu = createContextMenu();
 
         mainPane.getFiniteAutomaton().states().addListener((ListChangeListener<? super State>) change -> {
-            change.next();
-            if (change.wasAdded())
-                change.getAddedSubList().forEach(this::addState);
+            while (change.next())
+            {
+                if (change.wasAdded())
+                    addStates(change.getAddedSubList());
 
-            if (change.wasRemoved())
-                change.getRemoved().forEach(this::removeState);
+                if (change.wasRemoved())
+                    removeStates(change.getRemoved());
+            }
         });
 
         pane.setOnMousePressed(event -> {
@@ -137,44 +160,179 @@ public class GraphPane extends ScrollPane
         this.tool = tool;
     }
 
-    private void addState(State state)
+    /**
+     * Display States added together, such as those of an opened file
+     * Their items are inserted into the pane in a single update of the scene graph, instead of one per item
+     */
+    private void addStates(List<? extends State> states)
+    {
+        if (states.size() == 1 || batchedItems != null)
+        {
+            states.forEach(this::addState);
+            return;
+        }
+
+        batchedEdges = new ArrayList<>();
+        batchedItems = new ArrayList<>(2 * states.size());
+        batchedNodes = new ArrayList<>(states.size());
+        try
+        {
+            states.forEach(this::addState);
+        }
+        finally
+        {
+            List<javafx.scene.Node> edgeItems = batchedEdges, items = batchedItems;
+            List<JSONElement> nodesJSON = batchedNodes;
+            batchedEdges = batchedItems = null;
+            batchedNodes = null;
+
+            // Edges are kept below the nodes
+            pane.getChildren().addAll(0, edgeItems);
+            pane.getChildren().addAll(items);
+            object.getAsJSONArray(JSON_NODES).addAll(nodesJSON);
+        }
+    }
+    /**
+     * Remove the items of States removed together, such as when the automaton is cleared
+     * They are removed from the pane and from the JSON in a single update
+     */
+    private void removeStates(List<? extends State> states)
+    {
+        if (states.size() == 1 || removedItems != null)
+        {
+            states.forEach(this::removeState);
+            return;
+        }
+
+        removedItems = Collections.newSetFromMap(new IdentityHashMap<>());
+        removedNodes = new ArrayList<>(states.size());
+        try
+        {
+            states.forEach(this::removeState);
+        }
+        finally
+        {
+            Set<javafx.scene.Node> items = removedItems;
+            List<JSONElement> nodesJSON = removedNodes;
+            removedItems = null;
+            removedNodes = null;
+
+            pane.getChildren().removeAll(items);
+            object.getAsJSONArray(JSON_NODES).removeIdentical(nodesJSON);
+        }
+    }
+    private void addToPane(javafx.scene.Node item, boolean isEdge)
     {
-        mainPane.getFiniteAutomaton().states()
-                .stream()
-                .filter(s -> !s.equals(state))
-                .forEach(s ->
-                {
-                    final Edge e1 = new Edge(state, s, this);
-                    edges.add(e1);
-                    pane.getChildren().add(e1);
-
-                    final Edge e2 = new Edge(s, state, this);
-                    edges.add(e2);
-                    pane.getChildren().add(e2);
-                });
+        if (batchedItems != null) (isEdge ? batchedEdges : batchedItems).add(item);
+        else if (isEdge) pane.getChildren().add(0, item);
+        else pane.getChildren().add(item);
+    }
+    private void removeFromPane(javafx.scene.Node item)
+    {
+        if (removedItems != null) removedItems.add(item);
+        else pane.getChildren().remove(item);
+    }
 
+    private void addState(State state)
+    {
         SelfEdge selfEdge = new SelfEdge(state, this);
         selfEdges.add(selfEdge);
-        object.getAsJSONArray(JSON_NODES).add(state.getNode().getJSONObject());
-        pane.getChildren().add(selfEdge);
-        pane.getChildren().add(state.getNode());
+        selfEdgesByState.put(state, selfEdge);
+        if (batchedNodes != null) batchedNodes.add(state.getNode().getJSONObject());
+        else object.getAsJSONArray(JSON_NODES).add(state.getNode().getJSONObject());
+        addToPane(selfEdge, false);
+        addToPane(state.getNode(), false);
         nodes.add(state.getNode());
+
+        // Edges only exist for actual transitions, they follow the changes of the transition map
+        outgoingEdges.put(state, new IdentityHashMap<>());
+        incomingEdges.put(state, new IdentityHashMap<>());
+        TransitionListeners listeners = new TransitionListeners((p, k, o, n) -> updateEdges(state), (k, p) -> updateEdges(state));
+        state.transitionMap().addListener(listeners.change());
+        state.transitionMap().addListener(listeners.remove());
+        transitionListeners.put(state, listeners);
+        updateEdges(state);
+
+        Set<State> sources = pendingSources.remove(state);
+        if (sources != null) sources.forEach(this::updateEdges);
     }
     private void removeState(State state)
     {
-        var edgesToRemove = edges.stream().filter(e -> state.equals(e.source()) || state.equals(e.target()) && pane.getChildren().remove(e)).toList();
-        pane.getChildren().removeAll(edgesToRemove);
-        edgesToRemove.forEach(edges::remove);
+        TransitionListeners listeners = transitionListeners.remove(state);
+        if (listeners != null)
+        {
+            state.transitionMap().removeListener(listeners.change());
+            state.transitionMap().removeListener(listeners.remove());
+        }
 
-        final List<SelfEdge> selfEdgesToRemove = this.selfEdges.stream().filter(s -> s.state().equals(state)).toList();
-        pane.getChildren().removeAll(selfEdgesToRemove);
-        selfEdgesToRemove.forEach(this.selfEdges::remove);
+        Map<State, Edge> outgoing = outgoingEdges.remove(state), incoming = incomingEdges.remove(state);
+        if (outgoing != null) outgoing.values().forEach(this::removeEdge);
+        if (incoming != null) incoming.values().forEach(this::removeEdge);
+
+        SelfEdge selfEdge = selfEdgesByState.remove(state);
+        if (selfEdge != null)
+        {
+            removeFromPane(selfEdge);
+            selfEdges.remove(selfEdge);
+            selfEdge.dispose();
+        }
 
-        object.getAsJSONArray(JSON_NODES).remove(state.getNode().getJSONObject());
-        pane.getChildren().remove(state.getNode());
+        if (removedNodes != null) removedNodes.add(state.getNode().getJSONObject());
+        else object.getAsJSONArray(JSON_NODES).removeIdentical(List.of(state.getNode().getJSONObject()));
+        removeFromPane(state.getNode());
         nodes.remove(state.getNode());
     }
 
+    /**
+     * Create the Edges of the new transitions of a State, dispose those of its removed transitions and update the others
+     *
+     * @param source the State whose transitions changed
+     */
+    private void updateEdges(State source)
+    {
+        Map<State, Edge> outgoing = outgoingEdges.get(source);
+        if (outgoing == null) return;
+
+        Set<State> targets = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (ObjectProperty<List<State>> property : source.transitionMap().values())
+            if (property.get() != null)
+                for (State target : property.get())
+                    if (target != null && target != source)
+                    {
+                        if (outgoingEdges.containsKey(target)) targets.add(target);
+                        else pendingSources.computeIfAbsent(target, t -> Collections.newSetFromMap(new IdentityHashMap<>())).add(source);
+                    }
+
+        outgoing.values().stream().filter(e -> !targets.contains(e.target())).toList().forEach(this::removeEdge);
+
+        for (State target : targets)
+        {
+            Edge edge = outgoing.get(target);
+            if (edge != null)
+            {
+                edge.updateAlphabetDisplay();
+                continue;
+            }
+
+            edge = new Edge(source, target, this);
+            outgoing.put(target, edge);
+            incomingEdges.get(target).put(source, edge);
+            edges.add(edge);
+            addToPane(edge, true);
+        }
+    }
+    private void removeEdge(Edge edge)
+    {
+        Map<State, Edge> outgoing = outgoingEdges.get(edge.source()), incoming = incomingEdges.get(edge.target());
+        if (outgoing != null && outgoing.get(edge.target()) == edge) outgoing.remove(edge.target());
+        if (incoming != null && incoming.get(edge.source()) == edge) incoming.remove(edge.source());
+
+        edges.remove(edge);
+        if (batchedEdges != null) batchedEdges.remove(edge);
+        removeFromPane(edge);
+        edge.dispose();
+    }
+
     public JSONObject getJSONObject()
     {
         return object;
@@ -186,6 +344,14 @@ public class GraphPane extends ScrollPane
         object.checkHasArray(JSON_SELF_EDGES);
         object.checkHasArray(JSON_NODES);
 
+        // Items are looked up by name, indexed once for the whole file
+        Map<String, Node> nodesByName = new HashMap<>();
+        nodes.forEach(n -> nodesByName.put(n.getName(), n));
+        Map<String, SelfEdge> selfEdgesByName = new HashMap<>();
+        selfEdges.forEach(e -> selfEdgesByName.put(e.state().name(), e));
+        Map<String, Map<String, Edge>> edgesByName = new HashMap<>();
+        edges.forEach(e -> edgesByName.computeIfAbsent(e.getSourceName(), k -> new HashMap<>()).put(e.getTargetName(), e));
+
         for (JSONElement element : object.getAsJSONArray(JSON_NODES))
         {
             JSONObject obj;
@@ -193,11 +359,11 @@ public class GraphPane extends ScrollPane
             obj = element.getAsJSONObject();
             obj.checkHasString(Node.JSON_STATE);
 
-            Node node = nodes.stream().filter(n -> n.getState().name().equals(obj.get(Node.JSON_STATE).getAsString())).findAny().orElse(null);
+            Node node = nodesByName.get(obj.get(Node.JSON_STATE).getAsString());
             if (node == null)
             {
                 Main.log(Level.WARNING, "Tried to parse unknown node at \"%s\"", obj.get(SelfEdge.JSON_STATE));
-                return;
+                continue;
             }
 
             node.loadFromJSONObject(obj);
@@ -211,11 +377,12 @@ public class GraphPane extends ScrollPane
             obj.checkHasString(Edge.JSON_SOURCE);
             obj.checkHasString(Edge.JSON_TARGET);
 
-            Edge edge = edges.stream().filter(e -> e.getSourceName().equals(obj.get(Edge.JSON_SOURCE).getAsString()) && e.getTargetName().equals(obj.get(Edge.JSON_TARGET).getAsString())).findAny().orElse(null);
+            // Files used to contain an edge for every pair of states, those without transitions are skipped
+            Edge edge = edgesByName.getOrDefault(obj.get(Edge.JSON_SOURCE).getAsString(), Map.of()).get(obj.get(Edge.JSON_TARGET).getAsString());
             if (edge == null)
             {
-                Main.log(Level.WARNING, "Tried to parse unknown edge between \"%s\" and \"%s\"", obj.get(Edge.JSON_SOURCE), obj.get(Edge.JSON_TARGET));
-                return;
+                Main.log(Level.FINE, "Skipped the edge between \"%s\" and \"%s\", which has no transition", obj.get(Edge.JSON_SOURCE), obj.get(Edge.JSON_TARGET));
+                continue;
             }
 
             edge.loadJSONObject(obj);
@@ -228,17 +395,131 @@ public class GraphPane extends ScrollPane
             obj = element.getAsJSONObject();
             obj.checkHasString(SelfEdge.JSON_STATE);
 
-            SelfEdge edge = selfEdges.stream().filter(e -> e.state().name().equals(obj.get(SelfEdge.JSON_STATE).getAsString())).findAny().orElse(null);
+            SelfEdge edge = selfEdgesByName.get(obj.get(SelfEdge.JSON_STATE).getAsString());
             if (edge == null)
             {
                 Main.log(Level.WARNING, "Tried to parse unknown self edge at \"%s\"", obj.get(SelfEdge.JSON_STATE));
-                return;
+                continue;
             }
 
             edge.loadJSONObject(obj);
         }
     }
 
+    /**
+     * Extract the positions of the items, to save them in the binary format
+     *
+     * @param automaton the automaton being saved, giving the ids of the states
+     * @return the layout of the items
+     */
+    public BinaryFormat.Layout getLayout(Automaton automaton)
+    {
+        Map<String, Integer> indices = new HashMap<>(automaton.stateCount() * 2);
+        for (int i = 0; i < automaton.stateCount(); ++i) indices.put(automaton.stateName(i), i);
+
+        double[] nodePositions = new double[2 * automaton.stateCount()];
+        Arrays.fill(nodePositions, Double.NaN);
+        for (JSONElement element : object.getAsJSONArray(JSON_NODES))
+        {
+            JSONObject obj = element.getAsJSONObject();
+            Integer state = indices.get(obj.get(Node.JSON_STATE).getAsString());
+            if (state == null) continue;
+
+            nodePositions[2 * state] = obj.get(Node.JSON_X).getAsDouble();
+            nodePositions[2 * state + 1] = obj.get(Node.JSON_Y).getAsDouble();
+        }
+
+        JSONArray edgesArray = object.getAsJSONArray(JSON_EDGES);
+        int[] edgeStates = new int[2 * edgesArray.size()];
+        double[] controlPoints = new double[2 * edgesArray.size()];
+        int edgeCount = 0;
+        for (JSONElement element : edgesArray)
+        {
+            JSONObject obj = element.getAsJSONObject();
+            Integer source = indices.get(obj.get(Edge.JSON_SOURCE).getAsString()), target = indices.get(obj.get(Edge.JSON_TARGET).getAsString());
+            if (source == null || target == null) continue;
+
+            edgeStates[2 * edgeCount] = source;
+            edgeStates[2 * edgeCount + 1] = target;
+            controlPoints[2 * edgeCount] = obj.get(Edge.JSON_CONTROL_X).getAsDouble();
+            controlPoints[2 * edgeCount + 1] = obj.get(Edge.JSON_CONTROL_Y).getAsDouble();
+            ++edgeCount;
+        }
+
+        JSONArray selfEdgesArray = object.getAsJSONArray(JSON_SELF_EDGES);
+        int[] selfEdgeStates = new int[selfEdgesArray.size()];
+        double[] selfEdgeShapes = new double[3 * selfEdgesArray.size()];
+        int selfEdgeCount = 0;
+        for (JSONElement element : selfEdgesArray)
+        {
+            JSONObject obj = element.getAsJSONObject();
+            Integer state = indices.get(obj.get(SelfEdge.JSON_STATE).getAsString());
+            if (state == null) continue;
+
+            selfEdgeStates[selfEdgeCount] = state;
+            selfEdgeShapes[3 * selfEdgeCount] = obj.get(SelfEdge.JSON_CENTER_X).getAsDouble();
+            selfEdgeShapes[3 * selfEdgeCount + 1] = obj.get(SelfEdge.JSON_CENTER_Y).getAsDouble();
+            selfEdgeShapes[3 * selfEdgeCount + 2] = obj.get(SelfEdge.JSON_RADIUS).getAsDouble();
+            ++selfEdgeCount;
+        }
+
+        return new BinaryFormat.Layout(nodePositions,
+                                       Arrays.copyOf(edgeStates, 2 * edgeCount),
+                                       Arrays.copyOf(controlPoints, 2 * edgeCount),
+                                       Arrays.copyOf(selfEdgeStates, selfEdgeCount),
+                                       Arrays.copyOf(selfEdgeShapes, 3 * selfEdgeCount));
+    }
+    /**
+     * Load the positions of the items read from the binary format
+     * The layout is converted to the JSON of the graph, loaded as a JSON file would be
+     *
+     * @param layout    the layout to load
+     * @param automaton the automaton that was loaded, giving the names of the states
+     * @throws IOManager.CorruptedFileException when the layout is invalid
+     */
+    public void loadLayout(BinaryFormat.Layout layout, Automaton automaton) throws IOManager.CorruptedFileException
+    {
+        JSONArray nodesArray = new JSONArray();
+        for (int i = 0; i < automaton.stateCount(); ++i)
+        {
+            if (Double.isNaN(layout.nodePositions()[2 * i])) continue;
+
+            JSONObject obj = new JSONObject();
+            obj.addProperty(Node.JSON_STATE, automaton.stateName(i));
+            obj.addProperty(Node.JSON_X, layout.nodePositions()[2 * i]);
+            obj.addProperty(Node.JSON_Y, layout.nodePositions()[2 * i + 1]);
+            nodesArray.add(obj);
+        }
+
+        JSONArray edgesArray = new JSONArray();
+        for (int i = 0; i < layout.edges().length / 2; ++i)
+        {
+            JSONObject obj = new JSONObject();
+            obj.addProperty(Edge.JSON_SOURCE, automaton.stateName(layout.edges()[2 * i]));
+            obj.addProperty(Edge.JSON_TARGET, automaton.stateName(layout.edges()[2 * i + 1]));
+            obj.addProperty(Edge.JSON_CONTROL_X, layout.controlPoints()[2 * i]);
+            obj.addProperty(Edge.JSON_CONTROL_Y, layout.controlPoints()[2 * i + 1]);
+            edgesArray.add(obj);
+        }
+
+        JSONArray selfEdgesArray = new JSONArray();
+        for (int i = 0; i < layout.selfEdges().length; ++i)
+        {
+            JSONObject obj = new JSONObject();
+            obj.addProperty(SelfEdge.JSON_STATE, automaton.stateName(layout.selfEdges()[i]));
+            obj.addProperty(SelfEdge.JSON_CENTER_X, layout.selfEdgeShapes()[3 * i]);
+            obj.addProperty(SelfEdge.JSON_CENTER_Y, layout.selfEdgeShapes()[3 * i + 1]);
+            obj.addProperty(SelfEdge.JSON_RADIUS, layout.selfEdgeShapes()[3 * i + 2]);
+            selfEdgesArray.add(obj);
+        }
+
+        JSONObject graph = new JSONObject();
+        graph.add(JSON_NODES, nodesArray);
+        graph.add(JSON_EDGES, edgesArray);
+        graph.add(JSON_SELF_EDGES, selfEdgesArray);
+        loadJSON(graph);
+    }
+
     public void grantFocus(GraphItem item)
     {
         focusedItem.set(item);
@@ -278,6 +559,9 @@ public class GraphPane extends ScrollPane
         return focusedItem;
     }
 
+    private record TransitionListeners(PropertiesMap.PropertyChangeListener<Character, List<State>> change,
+                                       PropertiesMap.PropertyRemoveListener<Character, List<State>> remove) {}
+
     public enum Tool
     {
         EDIT,
@@ -21,6 +21,7 @@ import javafx.scene.layout.Pane;
 import javafx.stage.Stage;
 
 import java.io.File;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -78,6 +79,9 @@ public class MainPane extends BorderPane
         rightSplitPane.setOrientation(Orientation.VERTICAL);
         rightSplitPane.getItems().addAll(simulationPane);
 
+        Path recovery = ioManager.keepPreviousRecoveryFile();
+        if (recovery != null)
+            consolePane.log(System.Logger.Level.WARNING, "The previous session did not exit properly, its unsaved changes were recovered to %s", recovery.toAbsolutePath());
         ioManager.open(Resources.get("default.json"));
 
         setTop(menuBar);
@@ -96,6 +100,7 @@ public class MainPane extends BorderPane
                 return;
             }
 
+            ioManager.shutdown();
             Platform.exit();
         });
     }
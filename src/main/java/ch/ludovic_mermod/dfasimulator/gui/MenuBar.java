@@ -4,13 +4,19 @@ import ch.ludovic_mermod.dfasimulator.constants.Controls;
 import ch.ludovic_mermod.dfasimulator.constants.Strings;
 import ch.ludovic_mermod.dfasimulator.gui.pane_manager.Item;
 import ch.ludovic_mermod.dfasimulator.gui.pane_manager.PaneManager;
+import ch.ludovic_mermod.dfasimulator.logic.BinaryFormat;
+import ch.ludovic_mermod.dfasimulator.logic.DFA;
+import ch.ludovic_mermod.dfasimulator.logic.FiniteAutomaton;
 import ch.ludovic_mermod.dfasimulator.utils.Utils;
+import javafx.geometry.Point2D;
 import javafx.scene.control.Menu;
 import javafx.scene.control.MenuItem;
 import javafx.scene.control.SeparatorMenuItem;
 import javafx.stage.FileChooser;
 
 import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
 
 public class MenuBar extends javafx.scene.control.MenuBar
 {
@@ -21,6 +27,7 @@ public class MenuBar extends javafx.scene.control.MenuBar
     {
         fileChooser = new FileChooser();
         fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("DFA", "*.dfa"));
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Binary DFA", "*" + BinaryFormat.EXTENSION));
     }
 
     public void create(MainPane mainPane)
@@ -125,9 +132,37 @@ public class MenuBar extends javafx.scene.control.MenuBar
             Strings.bind("menu.dfa.test", testItem.textProperty());
             testItem.setOnAction(event -> Utils.openNewStage(new TestPane(mainPane), 800, 600));
             dfaMenu.getItems().add(testItem);
+
+            MenuItem minimizeItem = new MenuItem();
+            Strings.bind("menu.dfa.minimize", minimizeItem.textProperty());
+            minimizeItem.disableProperty().bind(graphPane.isSimulatingProperty());
+            minimizeItem.setOnAction(event -> minimize());
+            dfaMenu.getItems().add(minimizeItem);
         }
     }
 
+    /**
+     * Replace the automaton by its minimal DFA, the remaining states keep their position
+     */
+    private void minimize()
+    {
+        FiniteAutomaton finiteAutomaton = mainPane.getFiniteAutomaton();
+        if (!mainPane.getSimulation().compileDFA()) return;
+
+        Map<String, Point2D> positions = new HashMap<>();
+        finiteAutomaton.states().forEach(s -> positions.put(s.name(), new Point2D(s.getNode().getLayoutX(), s.getNode().getLayoutY())));
+        int stateCount = positions.size();
+
+        DFA.Minimization minimization = mainPane.getSimulation().compiledDFA().minimize();
+        finiteAutomaton.loadDFA(minimization.dfa());
+        finiteAutomaton.states().forEach(s -> {
+            Point2D position = positions.get(s.name());
+            if (position != null) s.getNode().relocate(position.getX(), position.getY());
+        });
+
+        mainPane.getConsolePane().log(System.Logger.Level.INFO, "Minimized the automaton from %d to %d states", stateCount, minimization.dfa().stateCount());
+    }
+
     private void open()
     {
         fileChooser.setTitle(Strings.get("menu.file.open").get());
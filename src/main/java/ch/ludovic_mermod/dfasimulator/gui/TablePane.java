@@ -132,6 +132,9 @@ public class TablePane extends ScrollPane
             tableView.getColumns().add(alphabetColumn);
         }
 
+        // Epsilon column
+        tableView.getColumns().add(createAlphabetColumn(State.EPSILON, finiteAutomaton, columnWidthBinding));
+
         // Accepting column
         {
             TableColumn<Pair<State, Boolean>, CheckBox> acceptingColumn = new TableColumn<>();
@@ -161,7 +164,7 @@ public class TablePane extends ScrollPane
                 Toggle button = new RadioButton();
                 button.setUserData(cellFeatures.getValue().getKey());
                 button.setToggleGroup(toggleGroup);
-                button.setSelected(cellFeatures.getValue().getKey().isInitialBinding().get());
+                button.setSelected(cellFeatures.getValue().getKey().isInitial());
                 return new SimpleObjectProperty<>(button);
             });
             toggleGroup.selectedToggleProperty().addListener((o, ov, nv) ->
@@ -205,7 +208,7 @@ public class TablePane extends ScrollPane
                         }
                     });
                     addAlphabetField.setOnAction(event -> {
-                        if (addAlphabetField.getText().length() == 1)
+                        if (addAlphabetField.getText().length() == 1 && addAlphabetField.getText().charAt(0) != State.EPSILON)
                             finiteAutomaton.alphabet().add(addAlphabetField.getText().charAt(0));
                     });
 
@@ -271,6 +274,8 @@ public class TablePane extends ScrollPane
         {
             if (cellFeatures.getValue().getValue())
             {
+                if (character == State.EPSILON) return new SimpleObjectProperty<>();
+
                 Button button = new Button();
                 Strings.bind("table_pane.remove_alphabet", button.textProperty());
                 button.setOnAction(event -> finiteAutomaton.alphabet().remove(character));
@@ -2,33 +2,48 @@ package ch.ludovic_mermod.dfasimulator.gui;
 
 import ch.ludovic_mermod.dfasimulator.constants.Strings;
 import ch.ludovic_mermod.dfasimulator.constants.settings.Settings;
-import ch.ludovic_mermod.dfasimulator.utils.CustomBindings;
+import ch.ludovic_mermod.dfasimulator.gui.components.ResultGrid;
+import ch.ludovic_mermod.dfasimulator.logic.InputGenerator;
+import ch.ludovic_mermod.dfasimulator.logic.ParallelTester;
 import ch.ludovic_mermod.dfasimulator.utils.Utils;
 import javafx.collections.FXCollections;
+import javafx.concurrent.Task;
 import javafx.geometry.Pos;
-import javafx.scene.control.Button;
-import javafx.scene.control.ChoiceBox;
-import javafx.scene.control.TextField;
-import javafx.scene.control.TextFormatter;
-import javafx.scene.layout.GridPane;
+import javafx.scene.control.*;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 import javafx.scene.text.Text;
 import javafx.util.converter.NumberStringConverter;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
-import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.IntFunction;
 
 /**
  * Pane to test an automaton over large amounts of inputs
+ * The inputs are tested in parallel, off the FX thread
  */
 public class TestPane extends VBox
 {
-    public static final String    FAILURE_COLOR = "test_pane.failure_color";
-    public static final String    SUCCESS_COLOR = "test_pane.success_color";
-    private final       MainPane  mainPane;
-    private final       TextField discardedCharacterField;
+    public static final String FAILURE_COLOR = "test_pane.failure_color";
+    public static final String SUCCESS_COLOR = "test_pane.success_color";
+
+    private static final long PROGRESS_INTERVAL = 100;
+
+    private final MainPane         mainPane;
+    private final TextField        discardedCharacterField;
+    private final ChoiceBox<Radix> radixChoiceBox;
+    private final ResultGrid       resultGrid;
+    private final Button           runButton;
+    private final Button           cancelButton;
+    private final ProgressBar      progressBar;
+    private final Text             summaryText;
+    private       Task<BitSet>     currentTask;
+    private       int              displayedBinaryCount;
 
     public TestPane(MainPane mainPane)
     {
@@ -41,22 +56,44 @@ public class TestPane extends VBox
         discardedCharacterField.setText("0");
         Strings.bind("test_pane.discarded_character_prompt", discardedCharacterField.promptTextProperty());
 
-        ChoiceBox<Radix> radixChoiceBox = new ChoiceBox<>(FXCollections.observableList(List.of(Radix.values())));
+        radixChoiceBox = new ChoiceBox<>(FXCollections.observableList(List.of(Radix.values())));
         radixChoiceBox.setConverter(Utils.stringConverter(radix -> Strings.get("test_pane.radix_" + radix.toString().toLowerCase()).get(), string -> {throw new UnsupportedOperationException();}, "null"));
         radixChoiceBox.setValue(Radix.HEX);
 
-        Button runButton = new Button();
+        runButton = new Button();
         Strings.bind("test_pane.run_button", runButton.textProperty());
 
-        GridPane gridPane = new GridPane();
-        gridPane.setAlignment(Pos.CENTER);
-        gridPane.gridLinesVisibleProperty().bind(Settings.getBoolean("test_pane.grid_lines"));
+        cancelButton = new Button();
+        Strings.bind("test_pane.cancel_button", cancelButton.textProperty());
+        cancelButton.setDisable(true);
+        cancelButton.setOnAction(event -> {
+            if (currentTask != null) currentTask.cancel();
+        });
+
+        progressBar = new ProgressBar(0);
+        progressBar.setVisible(false);
+        summaryText = new Text();
+
+        resultGrid = new ResultGrid();
+        resultGrid.fontProperty().bind(Settings.getFont("graph.font"));
+        resultGrid.successColorProperty().bind(Settings.getColor(SUCCESS_COLOR));
+        resultGrid.failureColorProperty().bind(Settings.getColor(FAILURE_COLOR));
+        resultGrid.gridLinesProperty().bind(Settings.getBoolean("test_pane.grid_lines"));
+        radixChoiceBox.valueProperty().addListener((o, ov, nv) -> {
+            if (displayedBinaryCount > 0) resultGrid.setLabels(binaryLabels(nv, displayedBinaryCount));
+        });
 
-        HBox inputBox = new HBox(maxValueField, mainPane.getFiniteAutomaton().hasBinaryAlphabet().getValue() ? radixChoiceBox : discardedCharacterField, runButton);
+        HBox inputBox = new HBox(maxValueField, mainPane.getFiniteAutomaton().hasBinaryAlphabet().getValue() ? radixChoiceBox : discardedCharacterField, runButton, cancelButton);
         inputBox.setAlignment(Pos.CENTER);
         inputBox.spacingProperty().bind(Settings.getDouble("test_pane.input_spacing"));
+
+        HBox statusBox = new HBox(progressBar, summaryText);
+        statusBox.setAlignment(Pos.CENTER);
+        statusBox.spacingProperty().bind(Settings.getDouble("test_pane.input_spacing"));
+
         getChildren().add(inputBox);
-        getChildren().add(gridPane);
+        getChildren().add(statusBox);
+        getChildren().add(resultGrid);
 
         mainPane.getFiniteAutomaton().hasBinaryAlphabet().addListener((o, ov, nv) -> inputBox.getChildren().set(1, nv ? radixChoiceBox : discardedCharacterField));
 
@@ -73,50 +110,119 @@ public class TestPane extends VBox
             }
 
             final int maxValue = Integer.parseInt(maxValueField.getText());
+            if (maxValue <= 0 || mainPane.getFiniteAutomaton().alphabet().isEmpty()) return;
 
-            Set<Character> alphabet = mainPane.getFiniteAutomaton().alphabet();
-            if (alphabet.size() == 2 && alphabet.contains('0') && alphabet.contains('1'))
-            {
-                int maxBinLen = Math.max(6, Integer.toBinaryString(maxValue).length()),
-                        maxHexLen = maxBinLen / 4,
-                        maxDecLen = (int) Math.ceil(Math.log10(maxValue));
+            run(maxValue);
+        });
 
-                for (int i = 0; i < maxValue; ++i)
-                {
-                    Text text = new Text();
-                    text.fontProperty().bind(Settings.getFont("graph.font"));
-                    text.fillProperty().bind(mainPane.getSimulation().test(Integer.toBinaryString(i)) ? Settings.getColor(SUCCESS_COLOR) : Settings.getColor(FAILURE_COLOR));
-
-                    int finalI = i;
-                    text.textProperty().bind(CustomBindings.create(() ->
-                            switch (radixChoiceBox.valueProperty().get())
-                                    {
-                                        case HEX -> String.format(" %" + maxHexLen + "x ", finalI);
-                                        case DEC -> String.format(" %" + maxDecLen + "d ", finalI);
-                                        case BIN -> String.format(" %" + maxBinLen + "s ", Integer.toBinaryString(finalI));
-                                    }, radixChoiceBox.valueProperty()));
-
-                    gridPane.add(text, i / 16, i % 16);
-                }
-            }
-            else
+        getStyleClass().add("background");
+    }
+
+    private void run(int maxValue)
+    {
+        final boolean binary = mainPane.getFiniteAutomaton().hasBinaryAlphabet().getValue();
+        final InputGenerator generator = binary ? InputGenerator.binary(maxValue) : createGenerator(maxValue);
+        final ParallelTester tester = new ParallelTester(mainPane.getSimulation().compiledDFA(), generator, maxValue);
+
+        Task<BitSet> task = new Task<>()
+        {
+            @Override
+            protected BitSet call() throws Exception
             {
-                var entries = generateEntries(maxValue);
+                var future = ForkJoinPool.commonPool().submit(() -> tester.run(ForkJoinPool.commonPool()));
 
-                for (int i = 0; i < entries.size(); ++i)
+                while (true)
                 {
-                    Text text = new Text(String.format(" %" + (int) Math.ceil(Math.log(maxValue) / Math.log(alphabet.size())) + "s ", entries.get(i)));
-                    text.fontProperty().bind(Settings.getFont("font"));
-                    text.fillProperty().bind(mainPane.getSimulation().test(entries.get(i)) ? Settings.getColor(SUCCESS_COLOR) : Settings.getColor(FAILURE_COLOR));
-                    gridPane.add(text, i / 16, i % 16);
+                    if (isCancelled()) tester.cancel();
+                    updateProgress(tester.testedCount(), tester.count());
+
+                    try
+                    {
+                        return future.get(PROGRESS_INTERVAL, TimeUnit.MILLISECONDS);
+                    }
+                    catch (TimeoutException ignored)
+                    {
+                    }
+                    catch (InterruptedException e)
+                    {
+                        tester.cancel();
+                        throw e;
+                    }
                 }
             }
+        };
+
+        task.setOnSucceeded(event -> {
+            BitSet results = task.getValue();
+            Strings.bindFormat("test_pane.summary", summaryText.textProperty(), results.cardinality(), maxValue);
+            displayResults(results, maxValue, binary, generator);
+            endRun();
+        });
+        task.setOnCancelled(event -> {
+            Strings.bind("test_pane.cancelled", summaryText.textProperty());
+            endRun();
+        });
+        task.setOnFailed(event -> {
+            mainPane.getConsolePane().log(System.Logger.Level.ERROR, "Error: %s", task.getException());
+            summaryText.textProperty().unbind();
+            summaryText.setText("");
+            endRun();
         });
 
-        getStyleClass().add("background");
+        currentTask = task;
+        displayedBinaryCount = 0;
+        resultGrid.clear();
+        summaryText.textProperty().unbind();
+        summaryText.setText("");
+        progressBar.progressProperty().bind(task.progressProperty());
+        progressBar.setVisible(true);
+        runButton.setDisable(true);
+        cancelButton.setDisable(false);
+
+        Thread thread = new Thread(task, "test-pane-runner");
+        thread.setDaemon(true);
+        thread.start();
     }
 
-    private List<String> generateEntries(int count)
+    private void endRun()
+    {
+        currentTask = null;
+        progressBar.progressProperty().unbind();
+        progressBar.setVisible(false);
+        runButton.setDisable(false);
+        cancelButton.setDisable(true);
+    }
+
+    private void displayResults(BitSet results, int maxValue, boolean binary, InputGenerator generator)
+    {
+        if (binary)
+        {
+            displayedBinaryCount = maxValue;
+            resultGrid.setResults(results, maxValue, binaryLabels(radixChoiceBox.getValue(), maxValue));
+        }
+        else
+        {
+            int alphabetSize = mainPane.getFiniteAutomaton().alphabet().size();
+            String format = " %" + Math.max(1, (int) Math.ceil(Math.log(maxValue) / Math.log(alphabetSize))) + "s ";
+            resultGrid.setResults(results, maxValue, i -> String.format(format, generator.get(i)));
+        }
+    }
+
+    private IntFunction<String> binaryLabels(Radix radix, int maxValue)
+    {
+        int maxBinLen = Math.max(6, Integer.toBinaryString(maxValue).length()),
+                maxHexLen = maxBinLen / 4,
+                maxDecLen = Math.max(1, (int) Math.ceil(Math.log10(maxValue)));
+
+        return switch (radix)
+                {
+                    case HEX -> i -> String.format(" %" + maxHexLen + "x ", i);
+                    case DEC -> i -> String.format(" %" + maxDecLen + "d ", i);
+                    case BIN -> i -> String.format(" %" + maxBinLen + "s ", Integer.toBinaryString(i));
+                };
+    }
+
+    private InputGenerator createGenerator(int count)
     {
         List<Character> alphabet = new ArrayList<>(mainPane.getFiniteAutomaton().alphabet());
         char c = 0;
@@ -132,42 +238,7 @@ public class TestPane extends VBox
             }
         }
 
-        List<Integer> list = new ArrayList<>();
-        for (int i = 0; i < (int) Math.ceil(Math.log(count) / Math.log(alphabet.size())); ++i) list.add(0);
-
-        List<String> result = new ArrayList<>();
-
-        for (int i = 0; i < count; ++i)
-        {
-            result.add(convert(alphabet, list, c));
-            increment(list, alphabet.size());
-        }
-
-        return result;
-    }
-
-    private void increment(List<Integer> list, int bound)
-    {
-        if (list.get(list.size() - 1) == bound - 1)
-        {
-            list.set(list.size() - 1, 0);
-            increment(list.subList(0, list.size() - 1), bound);
-        }
-        else
-            list.set(list.size() - 1, list.get(list.size() - 1) + 1);
-    }
-
-    private String convert(List<Character> alphabet, List<Integer> list, char discarded)
-    {
-        StringBuilder sb = new StringBuilder();
-        list.forEach(i -> {
-            if (alphabet.get(i) == discarded && sb.isEmpty()) return;
-            sb.append(alphabet.get(i));
-        });
-
-        if (sb.isEmpty()) sb.append(discarded);
-
-        return sb.toString();
+        return new InputGenerator(alphabet, c, count);
     }
 
     private enum Radix
@@ -25,6 +25,7 @@ import java.util.stream.Collectors;
 
 /**
  * Represent an Edge between two nodes
+ * An Edge only exists while its source has a transition to its target, the GraphPane creates and disposes it
  */
 public class Edge extends GraphItem
 {
@@ -79,11 +80,12 @@ public class Edge extends GraphItem
         alphabetDisplay = new Text();
         alphabetDisplay.fontProperty().bind(Settings.getFont("graph.font"));
         updateAlphabetDisplay();
-        source.transitionMap().addListener((p, k, o, n) -> updateAlphabetDisplay());
-        source.transitionMap().addListener((k, p) -> updateAlphabetDisplay());
 
         path = new Path(moveTo = new MoveTo(), curve = new QuadCurveTo());
 
+        // The Edge is created when the first transition appears, so it starts as a straight line between both nodes
+        setControlPoint((source.getNode().getLayoutX() + target.getNode().getLayoutX()) / 2, (source.getNode().getLayoutY() + target.getNode().getLayoutY()) / 2);
+
         Simulation simulation = graphPane.getMainPane().getSimulation();
         arrow = new Arrow(path);
         arrow.setMouseTransparent(true);
@@ -149,6 +151,14 @@ public class Edge extends GraphItem
         setControlPoint(object.get(JSON_CONTROL_X).getAsDouble(), object.get(JSON_CONTROL_Y).getAsDouble());
     }
 
+    /**
+     * Detach this Edge from the simulation, it must not be used afterwards
+     */
+    public void dispose()
+    {
+        arrow.fillProperty().unbind();
+    }
+
     @Override
     public String toString()
     {
@@ -210,7 +220,11 @@ public class Edge extends GraphItem
         });
     }
 
-    private void updateAlphabetDisplay()
+    /**
+     * Update the symbols displayed on this Edge
+     * Called by the GraphPane whenever the transitions of the source State change
+     */
+    public void updateAlphabetDisplay()
     {
         alphabetDisplay.setText(source.transitionMap()
                 .entrySet()
@@ -0,0 +1,208 @@
+package ch.ludovic_mermod.dfasimulator.gui.components;
+
+import javafx.beans.Observable;
+import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleBooleanProperty;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.geometry.Orientation;
+import javafx.geometry.VPos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.ScrollBar;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.Text;
+
+import java.util.BitSet;
+import java.util.function.IntFunction;
+
+/**
+ * Grid displaying the results of a test, one cell per input, laid out in columns of ROWS cells
+ * <p>
+ * Only the visible columns are drawn, on a single Canvas the size of the viewport: the labels are computed when a cell
+ * is drawn, so the memory used does not depend on the number of results.
+ */
+public class ResultGrid extends Region
+{
+    public static final  int    ROWS    = 16;
+    private static final double PADDING = 4;
+
+    private final Canvas    canvas;
+    private final ScrollBar scrollBar;
+    private final Text      measureText;
+
+    private final ObjectProperty<Font>  font;
+    private final ObjectProperty<Color> successColor;
+    private final ObjectProperty<Color> failureColor;
+    private final BooleanProperty       gridLines;
+
+    private BitSet              results;
+    private int                 count;
+    private IntFunction<String> labels;
+    private double              cellWidth, cellHeight;
+
+    /**
+     * Constructs an empty ResultGrid
+     */
+    public ResultGrid()
+    {
+        canvas = new Canvas();
+        scrollBar = new ScrollBar();
+        scrollBar.setOrientation(Orientation.HORIZONTAL);
+        measureText = new Text();
+
+        font = new SimpleObjectProperty<>(this, "font", Font.getDefault());
+        successColor = new SimpleObjectProperty<>(this, "successColor", Color.GREEN);
+        failureColor = new SimpleObjectProperty<>(this, "failureColor", Color.RED);
+        gridLines = new SimpleBooleanProperty(this, "gridLines", false);
+
+        results = new BitSet();
+        count = 0;
+        labels = i -> "";
+
+        font.addListener((o, ov, nv) -> measure());
+        for (Observable observable : new Observable[]{successColor, failureColor, gridLines, scrollBar.valueProperty()})
+            observable.addListener(o -> draw());
+
+        getChildren().addAll(canvas, scrollBar);
+        measure();
+    }
+
+    /**
+     * Display new results
+     *
+     * @param results the results, the bit i is set if the i-th input is accepted
+     * @param count   the number of results
+     * @param labels  function giving the label of the i-th cell
+     */
+    public void setResults(BitSet results, int count, IntFunction<String> labels)
+    {
+        this.results = results;
+        this.count = count;
+        this.labels = labels;
+        scrollBar.setValue(0);
+        measure();
+    }
+    /**
+     * Change the labels of the cells, only the visible ones are recomputed
+     *
+     * @param labels function giving the label of the i-th cell
+     */
+    public void setLabels(IntFunction<String> labels)
+    {
+        this.labels = labels;
+        measure();
+    }
+    /**
+     * Remove all results
+     */
+    public void clear()
+    {
+        setResults(new BitSet(), 0, i -> "");
+    }
+
+    public ObjectProperty<Font> fontProperty()
+    {
+        return font;
+    }
+    public ObjectProperty<Color> successColorProperty()
+    {
+        return successColor;
+    }
+    public ObjectProperty<Color> failureColorProperty()
+    {
+        return failureColor;
+    }
+    public BooleanProperty gridLinesProperty()
+    {
+        return gridLines;
+    }
+
+    private int columnCount()
+    {
+        return (count + ROWS - 1) / ROWS;
+    }
+
+    /**
+     * Compute the size of the cells from the first and last labels (the labels are expected to have similar widths)
+     */
+    private void measure()
+    {
+        measureText.setFont(font.get());
+        measureText.setText(count == 0 ? "" : labels.apply(0));
+        double width = measureText.getLayoutBounds().getWidth();
+        if (count > 1)
+        {
+            measureText.setText(labels.apply(count - 1));
+            width = Math.max(width, measureText.getLayoutBounds().getWidth());
+        }
+
+        cellWidth = width + 2 * PADDING;
+        cellHeight = measureText.getLayoutBounds().getHeight() + PADDING;
+
+        requestLayout();
+        draw();
+    }
+
+    @Override
+    protected void layoutChildren()
+    {
+        double width = getWidth(), barHeight = scrollBar.prefHeight(width), gridHeight = ROWS * cellHeight;
+        double contentWidth = columnCount() * cellWidth;
+
+        canvas.setWidth(width);
+        canvas.setHeight(gridHeight);
+        canvas.relocate(0, 0);
+
+        scrollBar.resizeRelocate(0, gridHeight, width, barHeight);
+        scrollBar.setMax(Math.max(0, contentWidth - width));
+        scrollBar.setVisibleAmount(width);
+        scrollBar.setVisible(contentWidth > width);
+
+        draw();
+    }
+    @Override
+    protected double computePrefHeight(double width)
+    {
+        return ROWS * cellHeight + scrollBar.prefHeight(width);
+    }
+    @Override
+    protected double computePrefWidth(double height)
+    {
+        return Math.min(columnCount(), 8) * cellWidth;
+    }
+
+    private void draw()
+    {
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        gc.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+        if (count == 0 || cellWidth <= 0) return;
+
+        double offset = scrollBar.isVisible() ? scrollBar.getValue() : 0;
+        int firstColumn = (int) (offset / cellWidth);
+        int lastColumn = Math.min(columnCount() - 1, (int) ((offset + canvas.getWidth()) / cellWidth));
+
+        gc.setFont(font.get());
+        gc.setTextBaseline(VPos.TOP);
+        gc.setStroke(Color.GRAY);
+
+        for (int column = firstColumn; column <= lastColumn; ++column)
+        {
+            double x = column * cellWidth - offset;
+
+            for (int row = 0; row < ROWS; ++row)
+            {
+                int i = column * ROWS + row;
+                if (i >= count) break;
+
+                double y = row * cellHeight;
+                gc.setFill(results.get(i) ? successColor.get() : failureColor.get());
+                gc.fillText(labels.apply(i), x + PADDING, y + PADDING / 2);
+
+                if (gridLines.get()) gc.strokeRect(x, y, cellWidth, cellHeight);
+            }
+        }
+    }
+}
@@ -10,6 +10,7 @@ import ch.ludovic_mermod.dfasimulator.utils.CustomBindings;
 import ch.ludovic_mermod.dfasimulator.utils.Maths;
 import ch.ludovic_mermod.dfasimulator.utils.Mutex;
 import ch.ludovic_mermod.dfasimulator.utils.Point2DProperty;
+import ch.ludovic_mermod.dfasimulator.utils.PropertiesMap;
 import javafx.beans.Observable;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.SimpleDoubleProperty;
@@ -20,6 +21,7 @@ import javafx.scene.shape.Path;
 import javafx.scene.text.Text;
 import javafx.util.Pair;
 
+import java.util.List;
 import java.util.stream.Collectors;
 
 /**
@@ -49,6 +51,9 @@ public class SelfEdge extends GraphItem
 
     private final Mutex mutex;
 
+    private final PropertiesMap.PropertyChangeListener<Character, List<State>> transitionChangeListener;
+    private final PropertiesMap.PropertyRemoveListener<Character, List<State>> transitionRemoveListener;
+
     public SelfEdge(State state, GraphPane graphPane)
     {
         super(graphPane);
@@ -67,8 +72,8 @@ public class SelfEdge extends GraphItem
             alphabetDisplay.xProperty().bind(center.xProperty());
             alphabetDisplay.yProperty().bind(center.yProperty().subtract(radius).subtract(20));
             updateAlphabetDisplay();
-            state.transitionMap().addListener((p, k, o, n) -> updateAlphabetDisplay());
-            state.transitionMap().addListener((k, p) -> updateAlphabetDisplay());
+            state.transitionMap().addListener(transitionChangeListener = (p, k, o, n) -> updateAlphabetDisplay());
+            state.transitionMap().addListener(transitionRemoveListener = (k, p) -> updateAlphabetDisplay());
         }
 
         // Create path components
@@ -237,6 +242,16 @@ public class SelfEdge extends GraphItem
         return state;
     }
 
+    /**
+     * Detach this SelfEdge from its State, it must not be used afterwards
+     */
+    public void dispose()
+    {
+        state.transitionMap().removeListener(transitionChangeListener);
+        state.transitionMap().removeListener(transitionRemoveListener);
+        arrow.fillProperty().unbind();
+    }
+
     @Override
     public String toString()
     {
@@ -1,6 +1,5 @@
 package ch.ludovic_mermod.dfasimulator.json;
 
-import com.google.gson.JsonArray;
 import javafx.beans.InvalidationListener;
 import javafx.beans.value.ObservableBooleanValue;
 import javafx.beans.value.ObservableNumberValue;
@@ -12,7 +11,6 @@ import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.*;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 
 public class JSONArray extends JSONElement implements ObservableList<JSONElement>
 {
@@ -21,30 +19,30 @@ public class JSONArray extends JSONElement implements ObservableList<JSONElement
 
     public JSONArray()
     {
-
-    }
-    public JSONArray(JsonArray array)
-    {
-        this();
-        array.forEach(e -> add(JSONElement.convert(e)));
+        elements.addListener((InvalidationListener) o -> ++revision);
     }
 
     public static <T> JSONArray fromObservableList(ObservableList<T> list, Function<T, JSONElement> jsonGetter)
     {
         JSONArray array = new JSONArray();
         list.forEach(e -> array.add(jsonGetter.apply(e)));
+        // Each change is mirrored at once, so that adding or removing many elements notifies the listeners a single time
         list.addListener((ListChangeListener<? super T>) change ->
         {
-            change.next();
-            if (change.wasAdded())
-                change.getAddedSubList().stream()
-                        .filter(Objects::nonNull)
-                        .forEach(e -> array.add(jsonGetter.apply(e)));
+            while (change.next())
+            {
+                if (change.wasRemoved())
+                    array.removeIdentical(change.getRemoved().stream()
+                                                  .filter(Objects::nonNull)
+                                                  .map(jsonGetter)
+                                                  .toList());
 
-            if (change.wasRemoved())
-                change.getRemoved().stream()
-                        .filter(Objects::nonNull)
-                        .forEach(e -> array.remove(jsonGetter.apply(e)));
+                if (change.wasAdded())
+                    array.addAll(change.getAddedSubList().stream()
+                                         .filter(Objects::nonNull)
+                                         .map(jsonGetter)
+                                         .toList());
+            }
         });
         return array;
     }
@@ -63,13 +61,42 @@ public class JSONArray extends JSONElement implements ObservableList<JSONElement
     public static <T> JSONArray fromObservableSet(ObservableSet<T> set, Function<T, JSONElement> jsonGetter)
     {
         JSONArray array = new JSONArray();
-        set.forEach(e -> array.add(jsonGetter.apply(e)));
+
+        // The order of a set does not matter, an element is removed by moving the last one in its place
+        Map<JSONElement, Integer> indices = new IdentityHashMap<>();
+        set.forEach(e ->
+        {
+            JSONElement element = jsonGetter.apply(e);
+            indices.put(element, array.size());
+            array.add(element);
+        });
         set.addListener((SetChangeListener<? super T>) change -> {
             if (change.wasAdded() && change.getElementAdded() != null)
-                array.add(jsonGetter.apply(change.getElementAdded()));
+            {
+                JSONElement element = jsonGetter.apply(change.getElementAdded());
+                indices.put(element, array.size());
+                array.add(element);
+            }
 
             if (change.wasRemoved() && change.getElementRemoved() != null)
-                array.remove(jsonGetter.apply(change.getElementRemoved()));
+            {
+                JSONElement element = jsonGetter.apply(change.getElementRemoved());
+                Integer index = indices.remove(element);
+                if (index == null || array.get(index) != element)
+                {
+                    array.remove(element);
+                    return;
+                }
+
+                int last = array.size() - 1;
+                if (index != last)
+                {
+                    JSONElement moved = array.get(last);
+                    array.set(index, moved);
+                    indices.put(moved, index);
+                }
+                array.remove(last);
+            }
         });
         return array;
     }
@@ -288,11 +315,13 @@ public class JSONArray extends JSONElement implements ObservableList<JSONElement
     @Override
     public boolean addAll(Collection<? extends JSONElement> c)
     {
+        c.forEach(e -> bindListeners(e, this, childUpdateListenerSet));
         return elements.addAll(c);
     }
     @Override
     public boolean addAll(int index, Collection<? extends JSONElement> c)
     {
+        c.forEach(e -> bindListeners(e, this, childUpdateListenerSet));
         return elements.addAll(index, c);
     }
     @Override
@@ -300,6 +329,21 @@ public class JSONArray extends JSONElement implements ObservableList<JSONElement
     {
         return elements.removeAll(c);
     }
+    /**
+     * Remove the given elements, compared by identity, in a single change
+     *
+     * @param c the elements to remove
+     * @return whether an element was removed
+     */
+    public boolean removeIdentical(Collection<? extends JSONElement> c)
+    {
+        if (c.isEmpty()) return false;
+
+        Set<JSONElement> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+        removed.addAll(c);
+        removed.forEach(e -> unbindListeners(e, this, childUpdateListenerSet));
+        return elements.removeAll(removed);
+    }
     @Override
     public boolean retainAll(Collection<?> c)
     {
@@ -367,7 +411,7 @@ public class JSONArray extends JSONElement implements ObservableList<JSONElement
     @Override
     public String toString()
     {
-        return elements.stream().map(Object::toString).collect(Collectors.joining(", ", "[", "]"));
+        return JSONWriter.toString(this);
     }
     @Override
     public void addListener(ListChangeListener<? super JSONElement> listChangeListener)
@@ -1,8 +1,7 @@
 package ch.ludovic_mermod.dfasimulator.json;
 
 import ch.ludovic_mermod.dfasimulator.Main;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonParser;
+import ch.ludovic_mermod.dfasimulator.utils.AtomicFile;
 import javafx.beans.InvalidationListener;
 import javafx.collections.ListChangeListener;
 import javafx.collections.SetChangeListener;
@@ -11,30 +10,41 @@ import java.io.*;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.Map;
 import java.util.Set;
 import java.util.logging.Level;
-import java.util.stream.Collectors;
 
 public abstract class JSONElement
 {
+    long revision;
+
     protected static void bindListeners(JSONElement element, JSONElement caller, Set<ChildUpdateListener> listeners)
     {
         if (element instanceof JSONObject)
         {
-            ((JSONObject) element).addListener((o, ov, nv) -> listeners.forEach(l -> l.onChildUpdate(caller)));
-            ((JSONObject) element).addListener((SetChangeListener<? super Map.Entry<String, JSONElement>>) change -> listeners.forEach(l -> l.onChildUpdate(caller)));
-            ((JSONObject) element).addListener((ChildUpdateListener) c -> listeners.forEach(l -> l.onChildUpdate(c)));
+            ((JSONObject) element).addListener((o, ov, nv) -> fireChildUpdate(caller, caller, listeners));
+            ((JSONObject) element).addListener((SetChangeListener<? super Map.Entry<String, JSONElement>>) change -> fireChildUpdate(caller, caller, listeners));
+            ((JSONObject) element).addListener((ChildUpdateListener) c -> fireChildUpdate(caller, c, listeners));
         }
 
         if (element instanceof JSONArray)
         {
-            ((JSONArray) element).addListener((ListChangeListener<? super JSONElement>) change -> listeners.forEach(l -> l.onChildUpdate(caller)));
-            ((JSONArray) element).addListener((InvalidationListener) change -> listeners.forEach(l -> l.onChildUpdate(caller)));
-            ((JSONArray) element).addListener((ChildUpdateListener) change -> listeners.forEach(l -> l.onChildUpdate(caller)));
+            ((JSONArray) element).addListener((ListChangeListener<? super JSONElement>) change -> fireChildUpdate(caller, caller, listeners));
+            ((JSONArray) element).addListener((InvalidationListener) change -> fireChildUpdate(caller, caller, listeners));
+            ((JSONArray) element).addListener((ChildUpdateListener) change -> fireChildUpdate(caller, caller, listeners));
         }
     }
 
+    /**
+     * Record that a descendant of an element changed, and notify the listeners of the element
+     */
+    private static void fireChildUpdate(JSONElement caller, JSONElement child, Set<ChildUpdateListener> listeners)
+    {
+        ++caller.revision;
+        listeners.forEach(l -> l.onChildUpdate(child));
+    }
+
     protected static void unbindListeners(JSONElement element, JSONElement caller, Set<ChildUpdateListener> listeners)
     {
         if (element instanceof JSONObject)
@@ -54,23 +64,14 @@ public abstract class JSONElement
 
     public static JSONElement parse(String str)
     {
-        return convert(JsonParser.parseString(str));
-    }
-    protected static JSONElement convert(JsonElement element)
-    {
-        if (element.isJsonObject()) return new JSONObject(element.getAsJsonObject());
-        if (element.isJsonArray()) return new JSONArray(element.getAsJsonArray());
-        if (element.isJsonPrimitive()) return new JSONPrimitive(element.getAsJsonPrimitive());
-        if (element.isJsonNull()) return JSONNull.INSTANCE;
-        return null;
+        return JSONReader.parse(str);
     }
 
     public static JSONElement readFromFile(String filename)
     {
-        try (BufferedReader in = new BufferedReader(new FileReader(filename)))
+        try (JSONReader reader = new JSONReader(new FileReader(filename, StandardCharsets.UTF_8)))
         {
-            final String collect = in.lines().collect(Collectors.joining("\n"));
-            return JSONElement.parse(collect);
+            return reader.read();
         }
         catch (IOException e)
         {
@@ -78,26 +79,43 @@ public abstract class JSONElement
             return new JSONObject();
         }
     }
-    public void saveToFile(String filename)
+    /**
+     * Write this element to a file
+     * It is written through AtomicFile, so that the file is never left partially written
+     *
+     * @param filename the path of the file
+     * @return whether the file was written
+     */
+    public boolean saveToFile(String filename)
     {
-        File file = new File(filename);
         try
         {
-            if (file.exists() || file.createNewFile())
-                try (FileOutputStream o = new FileOutputStream(file))
-                {
-                    o.write(toString().getBytes(StandardCharsets.UTF_8));
-                }
-            else
-                Main.log(Level.SEVERE, "Could not create file " + file.getAbsolutePath());
+            AtomicFile.write(Path.of(filename), out ->
+            {
+                JSONWriter writer = new JSONWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+                writer.write(this);
+                writer.flush();
+            });
+            return true;
         }
         catch (IOException e)
         {
-            Main.log(Level.SEVERE, "Could not save DFA", e);
+            Main.logger.log(Level.SEVERE, "Could not save to " + filename, e);
+            return false;
         }
     }
 
     public abstract JSONElement deepCopy();
+    /**
+     * The revision is increased on each change of this element or of one of its descendants, so that comparing two
+     * revisions tells whether the element changed in between without looking at its content
+     *
+     * @return the current revision of this element
+     */
+    public long revision()
+    {
+        return revision;
+    }
     public JSONObject getAsJSONObject()
     {
         if (this.isJSONObject())
@@ -2,7 +2,6 @@ package ch.ludovic_mermod.dfasimulator.json;
 
 import ch.ludovic_mermod.dfasimulator.logic.IOManager;
 import ch.ludovic_mermod.dfasimulator.utils.CustomBindings;
-import com.google.gson.JsonObject;
 import javafx.beans.InvalidationListener;
 import javafx.beans.Observable;
 import javafx.beans.value.ObservableBooleanValue;
@@ -16,7 +15,6 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
-import java.util.stream.Collectors;
 
 public class JSONObject extends JSONElement implements Observable
 {
@@ -31,11 +29,6 @@ public class JSONObject extends JSONElement implements Observable
     {
     }
 
-    public JSONObject(JsonObject obj)
-    {
-        obj.entrySet().forEach(e -> add(e.getKey(), JSONElement.convert(e.getValue())));
-    }
-
     public JSONObject deepCopy()
     {
         JSONObject result = new JSONObject();
@@ -57,6 +50,7 @@ public class JSONObject extends JSONElement implements Observable
             ((ObservableBooleanValue) members.get(property)).removeListener((o, ov, nv) -> addProperty(property, nv));
 
         JSONElement remove = members.remove(property);
+        ++revision;
 
         setChangeListeners.forEach(l -> l.onChanged(new SetChangeListener.Change<>(FXCollections.observableSet(entrySet()))
         {
@@ -87,9 +81,13 @@ public class JSONObject extends JSONElement implements Observable
     }
     public void add(String property, JSONElement value)
     {
+        // Writing the same primitive again is not a change, and must not mark the document as modified
+        if (value instanceof JSONPrimitive && value.equals(members.get(property))) return;
+
         bindListeners(value, this, childUpdateListeners);
 
         members.put(property, value == null ? JSONNull.INSTANCE : value);
+        ++revision;
 
         if (!members.containsKey(property))
             setChangeListeners.forEach(l -> l.onChanged(new SetChangeListener.Change<>(FXCollections.observableSet(entrySet()))
@@ -238,7 +236,7 @@ public class JSONObject extends JSONElement implements Observable
     @Override
     public String toString()
     {
-        return members.entrySet().stream().map(e -> String.format("\"%s\": %s", e.getKey(), e.getValue().toString())).collect(Collectors.joining(", ", "{", "}"));
+        return JSONWriter.toString(this);
     }
     public void addListener(PropertyChangeListener propertyChangeListener)
     {
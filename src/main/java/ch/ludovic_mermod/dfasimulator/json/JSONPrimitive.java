@@ -1,7 +1,5 @@
 package ch.ludovic_mermod.dfasimulator.json;
 
-import com.google.gson.JsonPrimitive;
-
 import java.math.BigDecimal;
 import java.math.BigInteger;
 
@@ -27,18 +25,6 @@ public class JSONPrimitive extends JSONElement
         value = c;
     }
 
-    public JSONPrimitive(JsonPrimitive primitive)
-    {
-        Object val = null;
-        if (primitive.isBoolean()) val = primitive.getAsBoolean();
-        if (primitive.isNumber())
-        {
-            val = primitive.getAsNumber();
-        }
-        if (primitive.isString()) val = primitive.getAsString();
-        value = val;
-    }
-
     private static boolean isIntegral(JSONPrimitive primitive)
     {
         return primitive.value instanceof Number number && (number instanceof BigInteger || number instanceof Long || number instanceof Integer || number instanceof Short || number instanceof Byte);
@@ -59,7 +45,7 @@ public class JSONPrimitive extends JSONElement
     }
     public String getAsString()
     {
-        return isNumber() ? getAsNumber().toString() : isBoolean() ? ((Boolean) value).toString() : (String) value;
+        return isNumber() ? getAsNumber().toString() : isBoolean() ? ((Boolean) value).toString() : value instanceof Character ? value.toString() : (String) value;
     }
 
     public double getAsDouble()
@@ -170,6 +156,6 @@ public class JSONPrimitive extends JSONElement
     @Override
     public String toString()
     {
-        return isString() ? String.format("\"%s\"", getAsString()) : value.toString();
+        return JSONWriter.toString(this);
     }
 }
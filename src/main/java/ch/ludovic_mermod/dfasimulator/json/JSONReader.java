@@ -0,0 +1,285 @@
+package ch.ludovic_mermod.dfasimulator.json;
+
+import com.google.gson.JsonSyntaxException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+
+/**
+ * Parse JSON from a Reader into JSONElements, in a single pass and without an intermediate tree
+ * <p>
+ * The input is read through an internal buffer, so the Reader does not need to be buffered. Syntax errors are reported
+ * with a JsonSyntaxException, as the parser of Gson used to do, with the line and column where they occurred.
+ */
+public class JSONReader implements Closeable
+{
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Reader        in;
+    private final char[]        buffer;
+    private final StringBuilder builder;
+
+    private int position, limit;
+    private int line, lineStart;
+
+    /**
+     * Constructs a JSONReader
+     *
+     * @param in the Reader to parse
+     */
+    public JSONReader(Reader in)
+    {
+        this.in = in;
+        buffer = new char[BUFFER_SIZE];
+        builder = new StringBuilder();
+        line = 1;
+    }
+
+    /**
+     * @param str the JSON to parse
+     * @return the parsed element
+     */
+    public static JSONElement parse(String str)
+    {
+        try (JSONReader reader = new JSONReader(new StringReader(str)))
+        {
+            return reader.read();
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Read a whole document, nothing but whitespaces may follow it
+     *
+     * @return the parsed element, JSONNull if the input is empty
+     * @throws IOException if the Reader throws one
+     */
+    public JSONElement read() throws IOException
+    {
+        int c = skipWhitespaces();
+        if (c == -1) return JSONNull.INSTANCE;
+
+        JSONElement element = readValue();
+        if (skipWhitespaces() != -1) throw error("Expected the end of the document");
+        return element;
+    }
+
+    private JSONElement readValue() throws IOException
+    {
+        int c = skipWhitespaces();
+        switch (c)
+        {
+            case '{':
+                return readObject();
+            case '[':
+                return readArray();
+            case '"':
+                ++position;
+                return new JSONPrimitive(readString());
+            case 't':
+                expectLiteral("true");
+                return new JSONPrimitive(true);
+            case 'f':
+                expectLiteral("false");
+                return new JSONPrimitive(false);
+            case 'n':
+                expectLiteral("null");
+                return JSONNull.INSTANCE;
+            case -1:
+                throw error("Unexpected end of the document");
+            default:
+                if (c == '-' || c >= '0' && c <= '9') return new JSONPrimitive(readNumber());
+                throw error("Unexpected character '%c'", (char) c);
+        }
+    }
+
+    private JSONObject readObject() throws IOException
+    {
+        ++position;
+        JSONObject object = new JSONObject();
+        if (skipWhitespaces() == '}')
+        {
+            ++position;
+            return object;
+        }
+
+        while (true)
+        {
+            if (skipWhitespaces() != '"') throw error("Expected a name");
+            ++position;
+            String name = readString();
+
+            if (skipWhitespaces() != ':') throw error("Expected ':'");
+            ++position;
+            object.add(name, readValue());
+
+            int c = skipWhitespaces();
+            ++position;
+            if (c == '}') return object;
+            if (c != ',') throw error("Expected ',' or '}'");
+        }
+    }
+
+    private JSONArray readArray() throws IOException
+    {
+        ++position;
+        JSONArray array = new JSONArray();
+        if (skipWhitespaces() == ']')
+        {
+            ++position;
+            return array;
+        }
+
+        while (true)
+        {
+            array.add(readValue());
+
+            int c = skipWhitespaces();
+            ++position;
+            if (c == ']') return array;
+            if (c != ',') throw error("Expected ',' or ']'");
+        }
+    }
+
+    /**
+     * Read a String whose opening quote was consumed
+     * Raw control characters are accepted, as older versions wrote them unescaped
+     */
+    private String readString() throws IOException
+    {
+        builder.setLength(0);
+        while (true)
+        {
+            if (position == limit && !fill()) throw error("Unterminated string");
+
+            // Runs of characters that need no unescaping are copied at once
+            int start = position;
+            while (position < limit && buffer[position] != '"' && buffer[position] != '\\')
+            {
+                if (buffer[position] == '\n') newLine(position);
+                ++position;
+            }
+            builder.append(buffer, start, position - start);
+            if (position == limit) continue;
+
+            if (buffer[position++] == '"') return builder.toString();
+
+            int c = next();
+            switch (c)
+            {
+                case '"', '\\', '/' -> builder.append((char) c);
+                case 'b' -> builder.append('\b');
+                case 'f' -> builder.append('\f');
+                case 'n' -> builder.append('\n');
+                case 'r' -> builder.append('\r');
+                case 't' -> builder.append('\t');
+                case 'u' -> {
+                    int value = 0;
+                    for (int i = 0; i < 4; ++i)
+                    {
+                        int digit = Character.digit(next(), 16);
+                        if (digit == -1) throw error("Invalid unicode escape");
+                        value = value << 4 | digit;
+                    }
+                    builder.append((char) value);
+                }
+                default -> throw error("Invalid escape sequence");
+            }
+        }
+    }
+
+    private Number readNumber() throws IOException
+    {
+        builder.setLength(0);
+        boolean integral = true;
+        while (true)
+        {
+            if (position == limit && !fill()) break;
+
+            char c = buffer[position];
+            if (c == '.' || c == 'e' || c == 'E') integral = false;
+            else if (c != '-' && c != '+' && (c < '0' || c > '9')) break;
+
+            builder.append(c);
+            ++position;
+        }
+
+        String number = builder.toString();
+        try
+        {
+            if (!integral) return Double.parseDouble(number);
+            return number.length() < 19 ? Long.parseLong(number) : new BigInteger(number);
+        }
+        catch (NumberFormatException e)
+        {
+            throw error("Invalid number \"%s\"", number);
+        }
+    }
+
+    private void expectLiteral(String literal) throws IOException
+    {
+        for (int i = 0; i < literal.length(); ++i)
+            if (next() != literal.charAt(i)) throw error("Expected \"%s\"", literal);
+    }
+
+    /**
+     * @return the next character which is not a whitespace, without consuming it, or -1 at the end of the input
+     */
+    private int skipWhitespaces() throws IOException
+    {
+        while (true)
+        {
+            if (position == limit && !fill()) return -1;
+
+            char c = buffer[position];
+            if (c == '\n') newLine(position);
+            else if (c != ' ' && c != '\t' && c != '\r') return c;
+            ++position;
+        }
+    }
+
+    /**
+     * @return the next character, or -1 at the end of the input
+     */
+    private int next() throws IOException
+    {
+        if (position == limit && !fill()) return -1;
+        return buffer[position++];
+    }
+
+    private boolean fill() throws IOException
+    {
+        lineStart -= limit;
+        position = limit = 0;
+
+        int read = in.read(buffer);
+        if (read <= 0) return false;
+
+        limit = read;
+        return true;
+    }
+
+    private void newLine(int index)
+    {
+        ++line;
+        lineStart = index + 1;
+    }
+
+    private JsonSyntaxException error(String format, Object... args)
+    {
+        return new JsonSyntaxException(String.format(format, args) + String.format(" at line %d column %d", line, position - lineStart + 1));
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        in.close();
+    }
+}
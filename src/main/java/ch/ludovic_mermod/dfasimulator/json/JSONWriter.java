@@ -0,0 +1,139 @@
+package ch.ludovic_mermod.dfasimulator.json;
+
+import java.io.*;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Serialize JSONElements to a Writer, without building the document as a String first
+ * <p>
+ * The output has the same layout as the toString methods of the elements, which use this class. Strings are escaped
+ * as required by the JSON specification.
+ */
+public class JSONWriter implements Closeable, Flushable
+{
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Writer out;
+
+    /**
+     * Constructs a JSONWriter, it is recommended to give it a buffered Writer
+     *
+     * @param out the Writer to write to
+     */
+    public JSONWriter(Writer out)
+    {
+        this.out = out;
+    }
+
+    /**
+     * @param element the element to serialize
+     * @return the JSON representation of the element
+     */
+    public static String toString(JSONElement element)
+    {
+        StringWriter writer = new StringWriter();
+        try
+        {
+            new JSONWriter(writer).write(element);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Write an element and all its descendants
+     *
+     * @param element the element to write
+     * @return this JSONWriter
+     * @throws IOException if the underlying Writer throws one
+     */
+    public JSONWriter write(JSONElement element) throws IOException
+    {
+        if (element == null || element.isJSONNull()) out.write("null");
+        else if (element.isJSONObject()) writeObject(element.getAsJSONObject());
+        else if (element.isJSONArray()) writeArray(element.getAsJSONArray());
+        else writePrimitive(element.getAsJSONPrimitive());
+        return this;
+    }
+
+    private void writeObject(JSONObject object) throws IOException
+    {
+        out.write('{');
+        Iterator<Map.Entry<String, JSONElement>> iterator = object.entrySet().iterator();
+        while (iterator.hasNext())
+        {
+            Map.Entry<String, JSONElement> entry = iterator.next();
+            writeString(entry.getKey());
+            out.write(": ");
+            write(entry.getValue());
+            if (iterator.hasNext()) out.write(", ");
+        }
+        out.write('}');
+    }
+
+    private void writeArray(JSONArray array) throws IOException
+    {
+        out.write('[');
+        for (int i = 0; i < array.size(); ++i)
+        {
+            if (i != 0) out.write(", ");
+            write(array.get(i));
+        }
+        out.write(']');
+    }
+
+    private void writePrimitive(JSONPrimitive primitive) throws IOException
+    {
+        if (primitive.isNumber() || primitive.isBoolean()) out.write(primitive.getAsString());
+        else writeString(primitive.getAsString());
+    }
+
+    private void writeString(String string) throws IOException
+    {
+        out.write('"');
+
+        // Runs of characters that need no escaping are written at once
+        int start = 0;
+        for (int i = 0; i < string.length(); ++i)
+        {
+            char c = string.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\') continue;
+
+            out.write(string, start, i - start);
+            start = i + 1;
+            switch (c)
+            {
+                case '"' -> out.write("\\\"");
+                case '\\' -> out.write("\\\\");
+                case '\n' -> out.write("\\n");
+                case '\r' -> out.write("\\r");
+                case '\t' -> out.write("\\t");
+                case '\b' -> out.write("\\b");
+                case '\f' -> out.write("\\f");
+                default -> {
+                    out.write("\\u00");
+                    out.write(HEX[c >> 4]);
+                    out.write(HEX[c & 0xF]);
+                }
+            }
+        }
+        out.write(string, start, string.length() - start);
+
+        out.write('"');
+    }
+
+    @Override
+    public void flush() throws IOException
+    {
+        out.flush();
+    }
+    @Override
+    public void close() throws IOException
+    {
+        out.close();
+    }
+}
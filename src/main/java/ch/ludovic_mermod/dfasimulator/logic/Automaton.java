@@ -0,0 +1,485 @@
+package ch.ludovic_mermod.dfasimulator.logic;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Immutable automaton, independent of JavaFX
+ * <p>
+ * This is the plain model of a FiniteAutomaton: states are dense ids and the targets of each (state, symbol) pair are
+ * stored contiguously, indexed by {@code offsets[state * (symbolCount + 1) + symbol]}, the last column holding the
+ * ε-transitions. Unlike NFA and DFA, nothing is compiled: ε-transitions are kept as they are, and the automaton may have
+ * no initial state.
+ */
+public class Automaton
+{
+    private static final String JSON_AUTOMATON = "automaton";
+
+    private final String[] stateNames;
+    private final char[]   symbols;
+    private final int[]    offsets;
+    private final int[]    targets;
+    private final long[]   accepting;
+    private final int      initialIndex;
+
+    /**
+     * Constructs an Automaton directly from its tables, the arrays are used and not copied
+     */
+    Automaton(String[] stateNames, char[] symbols, int[] offsets, int[] targets, long[] accepting, int initialIndex)
+    {
+        this.stateNames = stateNames;
+        this.symbols = symbols;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.accepting = accepting;
+        this.initialIndex = initialIndex;
+    }
+
+    /**
+     * Creates an Automaton with the current content of a FiniteAutomaton
+     * Keys of the transition maps that are not in the alphabet are ignored, as when compiling a FiniteAutomaton
+     *
+     * @param finiteAutomaton the automaton to copy
+     * @return the automaton
+     */
+    public static Automaton fromFiniteAutomaton(FiniteAutomaton finiteAutomaton)
+    {
+        List<State> states = finiteAutomaton.states();
+        Map<State, Integer> indices = new IdentityHashMap<>();
+        String[] names = new String[states.size()];
+        for (int i = 0; i < names.length; ++i)
+        {
+            indices.put(states.get(i), i);
+            names[i] = states.get(i).name();
+        }
+
+        char[] symbols = new char[finiteAutomaton.alphabet().size()];
+        int s = 0;
+        for (char c : new TreeSet<>(finiteAutomaton.alphabet())) symbols[s++] = c;
+
+        final int columns = symbols.length + 1;
+        long tableSize = (long) names.length * columns;
+        if (tableSize >= Integer.MAX_VALUE) throw new IllegalArgumentException("Transition table too large: " + names.length + " states * " + symbols.length + " symbols");
+
+        int[] offsets = new int[(int) tableSize + 1];
+        long[] accepting = new long[DFA.wordCount(names.length)];
+        int[] targets = new int[16];
+        int targetCount = 0;
+
+        long[] seen = new long[DFA.wordCount(names.length)];
+        for (int i = 0; i < names.length; ++i)
+        {
+            State state = states.get(i);
+            if (state.isAccepting()) DFA.setBit(accepting, i);
+
+            for (int j = 0; j < columns; ++j)
+            {
+                offsets[i * columns + j] = targetCount;
+
+                char key = j == symbols.length ? State.EPSILON : symbols[j];
+                List<State> list = state.transitionMap().containsKey(key) ? state.transitionMap().getValue(key) : null;
+                if (list == null) continue;
+
+                int start = targetCount;
+                for (State target : list)
+                {
+                    Integer index = indices.get(target);
+                    if (index == null || DFA.getBit(seen, index)) continue;
+
+                    DFA.setBit(seen, index);
+                    if (targetCount == targets.length) targets = Arrays.copyOf(targets, targets.length * 2);
+                    targets[targetCount++] = index;
+                }
+                for (int k = start; k < targetCount; ++k) seen[targets[k] >>> 6] = 0;
+            }
+        }
+        offsets[offsets.length - 1] = targetCount;
+
+        Integer initialIndex = finiteAutomaton.initialState() == null ? null : indices.get(finiteAutomaton.initialState());
+        return new Automaton(names, symbols, offsets, Arrays.copyOf(targets, targetCount), accepting, initialIndex == null ? DFA.NO_STATE : initialIndex);
+    }
+
+    /**
+     * Read an automaton from a file saved by the IOManager, in the JSON or in the binary format
+     * Binary files are memory-mapped (see {@link BinaryFormat#readMapped(Path)}), this is meant for headless runs.
+     *
+     * @param path the file to read
+     * @return the automaton
+     * @throws IOException                      if the file cannot be read
+     * @throws IOManager.CorruptedFileException if the file does not contain a valid automaton
+     */
+    public static Automaton readFromFile(Path path) throws IOException, IOManager.CorruptedFileException
+    {
+        if (BinaryFormat.isBinary(path)) return BinaryFormat.readMapped(path).automaton();
+
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8))
+        {
+            return read(reader);
+        }
+    }
+    /**
+     * Read an automaton in the JSON format of the IOManager, in a single pass
+     * Both a whole saved file and its "automaton" object are accepted, the layout of the graph is skipped
+     *
+     * @param reader the JSON to read, it is not closed
+     * @return the automaton
+     * @throws IOException                      if the reader throws one
+     * @throws IOManager.CorruptedFileException if the JSON does not contain a valid automaton
+     */
+    public static Automaton read(Reader reader) throws IOException, IOManager.CorruptedFileException
+    {
+        try
+        {
+            JsonReader json = new JsonReader(reader);
+            Loader loader = new Loader();
+
+            json.beginObject();
+            while (json.hasNext())
+            {
+                String key = json.nextName();
+                switch (key)
+                {
+                    case JSON_AUTOMATON -> loader.readAutomaton(json);
+                    case FiniteAutomaton.JSON_STATES, FiniteAutomaton.JSON_ALPHABET, FiniteAutomaton.JSON_INITIAL -> loader.readMember(key, json);
+                    default -> json.skipValue();
+                }
+            }
+            json.endObject();
+
+            return loader.create();
+        }
+        catch (IllegalStateException | JsonParseException e)
+        {
+            throw new IOManager.CorruptedFileException("Invalid JSON: %s", e.getMessage());
+        }
+    }
+
+    /**
+     * @return the number of states
+     */
+    public int stateCount()
+    {
+        return stateNames.length;
+    }
+    /**
+     * @return the number of symbols in the alphabet
+     */
+    public int symbolCount()
+    {
+        return symbols.length;
+    }
+    /**
+     * @return the id of the initial state, or NO_STATE if there is none
+     */
+    public int initialIndex()
+    {
+        return initialIndex;
+    }
+    /**
+     * @param index index of a symbol
+     * @return the symbol at the given index, symbols being sorted
+     */
+    public char symbol(int index)
+    {
+        return symbols[index];
+    }
+    /**
+     * @param state id of a state
+     * @return the name of the state
+     */
+    public String stateName(int state)
+    {
+        return stateNames[state];
+    }
+    /**
+     * @param state id of a state
+     * @return whether the state is accepting
+     */
+    public boolean isAccepting(int state)
+    {
+        return DFA.getBit(accepting, state);
+    }
+    /**
+     * @param state  id of the source state
+     * @param symbol index of the symbol
+     * @return the ids of the targets of the transition, without duplicates
+     */
+    public int[] targets(int state, int symbol)
+    {
+        int index = state * (symbols.length + 1) + symbol;
+        return Arrays.copyOfRange(targets, offsets[index], offsets[index + 1]);
+    }
+    /**
+     * @param state id of the source state
+     * @return the ids of the targets of the ε-transitions of the state, without duplicates
+     */
+    public int[] epsilonTargets(int state)
+    {
+        return targets(state, symbols.length);
+    }
+    /**
+     * @param state  id of the source state
+     * @param symbol index of the symbol
+     * @return the first target of the transition, or NO_STATE if it has none
+     */
+    public int firstTarget(int state, int symbol)
+    {
+        int index = state * (symbols.length + 1) + symbol;
+        return offsets[index] == offsets[index + 1] ? DFA.NO_STATE : targets[offsets[index]];
+    }
+    /**
+     * @param state  id of the source state
+     * @param symbol index of the symbol
+     * @return the number of targets of the transition
+     */
+    public int targetCount(int state, int symbol)
+    {
+        int index = state * (symbols.length + 1) + symbol;
+        return offsets[index + 1] - offsets[index];
+    }
+    /**
+     * @return whether any state has an ε-transition
+     */
+    public boolean hasEpsilonTransitions()
+    {
+        for (int state = 0; state < stateNames.length; ++state)
+            if (targetCount(state, symbols.length) != 0) return true;
+        return false;
+    }
+    /**
+     * @return whether the automaton is a DFA: it has an initial state, no ε-transition, and exactly one target per transition
+     */
+    public boolean isDeterministic()
+    {
+        if (initialIndex == DFA.NO_STATE) return false;
+
+        for (int state = 0; state < stateNames.length; ++state)
+        {
+            for (int symbol = 0; symbol < symbols.length; ++symbol)
+                if (targetCount(state, symbol) != 1) return false;
+            if (targetCount(state, symbols.length) != 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Collects the content of the JSON, whatever the order of its members, then resolves the names once everything is read
+     * It is also fed by the OpenTask, which walks a parsed JSONObject instead of a JsonReader
+     */
+    static class Loader
+    {
+        private final List<String> names       = new ArrayList<>();
+        private final BitSet       accepting   = new BitSet();
+        private final Set<Character> alphabet  = new TreeSet<>();
+        private       String       initial;
+        private       boolean      hasStates, hasAlphabet, hasInitial;
+
+        // One entry per (source, key, target) triple, targets are resolved by name at the end
+        private int[]              sources     = new int[16];
+        private char[]             keys        = new char[16];
+        private final List<String> targetNames = new ArrayList<>();
+
+        void readAutomaton(JsonReader json) throws IOException, IOManager.CorruptedFileException
+        {
+            json.beginObject();
+            while (json.hasNext()) readMember(json.nextName(), json);
+            json.endObject();
+        }
+
+        void readMember(String key, JsonReader json) throws IOException, IOManager.CorruptedFileException
+        {
+            switch (key)
+            {
+                case FiniteAutomaton.JSON_STATES ->
+                {
+                    startStates();
+                    json.beginArray();
+                    while (json.hasNext()) readState(json);
+                    json.endArray();
+                }
+                case FiniteAutomaton.JSON_ALPHABET ->
+                {
+                    startAlphabet();
+                    json.beginArray();
+                    while (json.hasNext()) addSymbol(json.nextString());
+                    json.endArray();
+                }
+                case FiniteAutomaton.JSON_INITIAL -> setInitial(json.nextString());
+                default -> json.skipValue();
+            }
+        }
+
+        void startStates()
+        {
+            hasStates = true;
+        }
+        void startAlphabet()
+        {
+            hasAlphabet = true;
+        }
+        void addSymbol(String symbol) throws IOManager.CorruptedFileException
+        {
+            if (symbol.length() != 1 || symbol.charAt(0) == State.EPSILON)
+                throw new IOManager.CorruptedFileException("Could not convert \"%s\" to a character", symbol);
+            alphabet.add(symbol.charAt(0));
+        }
+        void setInitial(String name)
+        {
+            hasInitial = true;
+            initial = name;
+        }
+        /**
+         * @return the id of the next State, which is the source of the transitions added until it is added
+         */
+        int nextState()
+        {
+            return names.size();
+        }
+        void addState(String name, boolean isAccepting)
+        {
+            if (isAccepting) accepting.set(names.size());
+            names.add(name);
+        }
+        void addTransition(int source, char key, String targetName)
+        {
+            if (targetNames.size() == sources.length)
+            {
+                sources = Arrays.copyOf(sources, sources.length * 2);
+                keys = Arrays.copyOf(keys, keys.length * 2);
+            }
+            sources[targetNames.size()] = source;
+            keys[targetNames.size()] = key;
+            targetNames.add(targetName);
+        }
+
+        private void readState(JsonReader json) throws IOException, IOManager.CorruptedFileException
+        {
+            int id = nextState();
+            String name = null;
+            Boolean isAccepting = null;
+            boolean hasTransitionMap = false;
+
+            json.beginObject();
+            while (json.hasNext())
+            {
+                switch (json.nextName())
+                {
+                    case State.JSON_NAME -> name = json.nextString();
+                    case State.JSON_IS_ACCEPTING -> isAccepting = json.nextBoolean();
+                    case State.JSON_TRANSITION_MAP ->
+                    {
+                        hasTransitionMap = true;
+                        readTransitionMap(id, json);
+                    }
+                    default -> json.skipValue();
+                }
+            }
+            json.endObject();
+
+            if (name == null || isAccepting == null || !hasTransitionMap)
+                throw new IOManager.CorruptedFileException("State %d is missing its name, accepting flag or transition map", id);
+
+            addState(name, isAccepting);
+        }
+
+        private void readTransitionMap(int source, JsonReader json) throws IOException, IOManager.CorruptedFileException
+        {
+            json.beginObject();
+            while (json.hasNext())
+            {
+                String key = json.nextName();
+                if (key.length() != 1) throw new IOManager.CorruptedFileException("Could not parse \"%s\" into a transition map", key);
+
+                if (json.peek() == JsonToken.NULL)
+                {
+                    json.nextNull();
+                    continue;
+                }
+
+                json.beginArray();
+                while (json.hasNext()) addTransition(source, key.charAt(0), json.nextString());
+                json.endArray();
+            }
+            json.endObject();
+        }
+
+        Automaton create() throws IOManager.CorruptedFileException
+        {
+            if (!hasStates || !hasAlphabet || !hasInitial)
+                throw new IOManager.CorruptedFileException("The automaton is missing its states, alphabet or initial state");
+
+            Map<String, Integer> indices = new HashMap<>(names.size() * 2);
+            for (int i = 0; i < names.size(); ++i)
+                if (indices.putIfAbsent(names.get(i), i) != null)
+                    throw new IOManager.CorruptedFileException("Duplicate state \"%s\"", names.get(i));
+
+            char[] symbols = new char[alphabet.size()];
+            int s = 0;
+            for (char c : alphabet) symbols[s++] = c;
+
+            // Column of each key, keys outside of the alphabet are ignored as when compiling a FiniteAutomaton
+            final int columns = symbols.length + 1;
+            int[] columnOf = new int[Character.MAX_VALUE + 1];
+            Arrays.fill(columnOf, DFA.NO_STATE);
+            for (int i = 0; i < symbols.length; ++i) columnOf[symbols[i]] = i;
+            columnOf[State.EPSILON] = symbols.length;
+
+            long tableSize = (long) names.size() * columns;
+            if (tableSize >= Integer.MAX_VALUE) throw new IOManager.CorruptedFileException("Transition table too large: %d states * %d symbols", names.size(), symbols.length);
+
+            // Counting sort of the targets by (source, column)
+            int count = targetNames.size();
+            int[] cells = new int[count], resolved = new int[count];
+            int[] offsets = new int[(int) tableSize + 1];
+            for (int i = 0; i < count; ++i)
+            {
+                Integer target = indices.get(targetNames.get(i));
+                if (target == null) throw new IOManager.CorruptedFileException("Unknown state \"%s\" in the transitions of \"%s\"", targetNames.get(i), names.get(sources[i]));
+
+                int column = columnOf[keys[i]];
+                cells[i] = column == DFA.NO_STATE ? DFA.NO_STATE : sources[i] * columns + column;
+                resolved[i] = target;
+                if (cells[i] != DFA.NO_STATE) ++offsets[cells[i] + 1];
+            }
+            for (int i = 0; i + 1 < offsets.length; ++i) offsets[i + 1] += offsets[i];
+
+            int[] targets = new int[offsets[offsets.length - 1]], position = Arrays.copyOf(offsets, offsets.length - 1);
+            for (int i = 0; i < count; ++i)
+                if (cells[i] != DFA.NO_STATE) targets[position[cells[i]]++] = resolved[i];
+
+            // Duplicated targets are removed in place, keeping the first occurrence
+            long[] seen = new long[DFA.wordCount(names.size())];
+            int size = 0;
+            for (int cell = 0; cell + 1 < offsets.length; ++cell)
+            {
+                int start = size, end = offsets[cell + 1];
+                for (int k = offsets[cell]; k < end; ++k)
+                    if (!DFA.getBit(seen, targets[k]))
+                    {
+                        DFA.setBit(seen, targets[k]);
+                        targets[size++] = targets[k];
+                    }
+                for (int k = start; k < size; ++k) seen[targets[k] >>> 6] = 0;
+                offsets[cell] = start;
+            }
+            offsets[offsets.length - 1] = size;
+
+            Integer initialIndex = indices.get(initial);
+            return new Automaton(names.toArray(new String[0]),
+                                 symbols,
+                                 offsets,
+                                 Arrays.copyOf(targets, size),
+                                 Arrays.copyOf(accepting.toLongArray(), DFA.wordCount(names.size())),
+                                 initialIndex == null ? DFA.NO_STATE : initialIndex);
+        }
+    }
+}
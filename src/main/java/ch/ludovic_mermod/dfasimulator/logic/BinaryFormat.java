@@ -0,0 +1,358 @@
+package ch.ludovic_mermod.dfasimulator.logic;
+
+import ch.ludovic_mermod.dfasimulator.utils.AtomicFile;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Compact binary file format for automata, read and written alongside JSON by the IOManager
+ * <p>
+ * A file is made of, in order:
+ * <ul>
+ *     <li>the magic bytes "DFAB", a version byte and a flags byte (bit 0 set if there is a layout section)</li>
+ *     <li>the string table: the number of states and the UTF-8 name of each of them, its index being the id of the state</li>
+ *     <li>the alphabet: the number of symbols and the sorted symbols</li>
+ *     <li>the initial state id plus one, 0 if there is none</li>
+ *     <li>the accepting states, as a bitset of one bit per state</li>
+ *     <li>the dense transition table: for each state, for each symbol then for ε, the number of targets and their ids</li>
+ *     <li>optionally, the layout of the GraphPane (see {@link Layout})</li>
+ * </ul>
+ * All integers are unsigned varints (7 bits per byte, least significant first), and all reals are big-endian doubles.
+ * This class does not depend on JavaFX, so that binary files can also be run headless.
+ */
+public class BinaryFormat
+{
+    /**
+     * Extension of the files in this format
+     */
+    public static final String EXTENSION = ".dfab";
+
+    private static final byte[] MAGIC       = {'D', 'F', 'A', 'B'};
+    private static final int    VERSION     = 1;
+    private static final int    FLAG_LAYOUT = 1;
+
+    private BinaryFormat() {}
+
+    /**
+     * @param path the file to test
+     * @return whether the file starts with the magic bytes of this format
+     * @throws IOException if the file cannot be read
+     */
+    public static boolean isBinary(Path path) throws IOException
+    {
+        try (InputStream in = Files.newInputStream(path))
+        {
+            return Arrays.equals(in.readNBytes(MAGIC.length), MAGIC);
+        }
+    }
+
+    /**
+     * Write an automaton to a file
+     * It is written through AtomicFile, so that the file is never left partially written
+     *
+     * @param path      the file to write to
+     * @param automaton the automaton to write
+     * @param layout    the layout of the automaton, or null to write none
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(Path path, Automaton automaton, Layout layout) throws IOException
+    {
+        AtomicFile.write(path, out ->
+        {
+            DataOutputStream data = new DataOutputStream(out);
+            write(data, automaton, layout);
+            data.flush();
+        });
+    }
+
+    /**
+     * Write an automaton to a stream
+     *
+     * @param out       the stream to write to, it is not closed
+     * @param automaton the automaton to write
+     * @param layout    the layout of the automaton, or null to write none
+     * @throws IOException if the stream throws one
+     */
+    public static void write(DataOutputStream out, Automaton automaton, Layout layout) throws IOException
+    {
+        out.write(MAGIC);
+        out.write(VERSION);
+        out.write(layout == null ? 0 : FLAG_LAYOUT);
+
+        int stateCount = automaton.stateCount(), symbolCount = automaton.symbolCount();
+        writeVarint(out, stateCount);
+        for (int state = 0; state < stateCount; ++state)
+        {
+            byte[] name = automaton.stateName(state).getBytes(StandardCharsets.UTF_8);
+            writeVarint(out, name.length);
+            out.write(name);
+        }
+
+        writeVarint(out, symbolCount);
+        for (int symbol = 0; symbol < symbolCount; ++symbol) writeVarint(out, automaton.symbol(symbol));
+
+        writeVarint(out, automaton.initialIndex() + 1);
+
+        for (int i = 0; i < stateCount; i += 8)
+        {
+            int bits = 0;
+            for (int j = 0; j < 8 && i + j < stateCount; ++j)
+                if (automaton.isAccepting(i + j)) bits |= 1 << j;
+            out.write(bits);
+        }
+
+        for (int state = 0; state < stateCount; ++state)
+            for (int symbol = 0; symbol <= symbolCount; ++symbol)
+            {
+                int[] targets = automaton.targets(state, symbol);
+                writeVarint(out, targets.length);
+                for (int target : targets) writeVarint(out, target);
+            }
+
+        if (layout != null) layout.write(out, stateCount);
+    }
+
+    /**
+     * Read a file into memory
+     * The file is not kept open, so that it can be replaced (e.g. when saving over it) while the automaton is in use.
+     *
+     * @param path the file to read
+     * @return the content of the file
+     * @throws IOException                      if the file cannot be read
+     * @throws IOManager.CorruptedFileException if the file is not a valid binary automaton
+     */
+    public static Content read(Path path) throws IOException, IOManager.CorruptedFileException
+    {
+        long size = Files.size(path);
+        if (size > Integer.MAX_VALUE) throw new IOManager.CorruptedFileException("File too large: %d bytes", size);
+
+        return read(ByteBuffer.wrap(Files.readAllBytes(path)));
+    }
+    /**
+     * Read a file through a memory mapping
+     * The mapping lasts until it is garbage collected, and prevents replacing the file on some systems (e.g. Windows):
+     * this is meant for headless runs reading the file once, {@link #read(Path)} should be used otherwise.
+     *
+     * @param path the file to read
+     * @return the content of the file
+     * @throws IOException                      if the file cannot be read
+     * @throws IOManager.CorruptedFileException if the file is not a valid binary automaton
+     */
+    public static Content readMapped(Path path) throws IOException, IOManager.CorruptedFileException
+    {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            if (channel.size() > Integer.MAX_VALUE) throw new IOManager.CorruptedFileException("File too large: %d bytes", channel.size());
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return read(buffer);
+        }
+    }
+
+    /**
+     * Read an automaton from a buffer, starting at its position
+     *
+     * @param buffer the buffer to read
+     * @return the content of the buffer
+     * @throws IOManager.CorruptedFileException if the buffer does not hold a valid binary automaton
+     */
+    public static Content read(ByteBuffer buffer) throws IOManager.CorruptedFileException
+    {
+        try
+        {
+            byte[] magic = new byte[MAGIC.length];
+            buffer.get(magic);
+            if (!Arrays.equals(magic, MAGIC)) throw new IOManager.CorruptedFileException("Not a binary automaton");
+
+            int version = buffer.get() & 0xFF;
+            if (version != VERSION) throw new IOManager.CorruptedFileException("Unsupported version %d", version);
+            int flags = buffer.get() & 0xFF;
+
+            // Each state takes at least one byte, so that a corrupted count cannot cause a huge allocation
+            int stateCount = readCount(buffer);
+            String[] names = new String[stateCount];
+            Set<String> uniqueNames = new HashSet<>(stateCount * 2);
+            for (int state = 0; state < stateCount; ++state)
+            {
+                byte[] name = new byte[readCount(buffer)];
+                buffer.get(name);
+                names[state] = new String(name, StandardCharsets.UTF_8);
+                if (!uniqueNames.add(names[state])) throw new IOManager.CorruptedFileException("Duplicate state \"%s\"", names[state]);
+            }
+
+            int symbolCount = readCount(buffer);
+            char[] symbols = new char[symbolCount];
+            for (int symbol = 0; symbol < symbolCount; ++symbol)
+            {
+                int c = readVarint(buffer);
+                if (c > Character.MAX_VALUE || c == State.EPSILON || symbol > 0 && c <= symbols[symbol - 1])
+                    throw new IOManager.CorruptedFileException("Invalid symbol %d", c);
+                symbols[symbol] = (char) c;
+            }
+
+            int initialIndex = readVarint(buffer) - 1;
+            if (initialIndex >= stateCount) throw new IOManager.CorruptedFileException("Invalid initial state %d", initialIndex);
+
+            long[] accepting = new long[DFA.wordCount(stateCount)];
+            for (int i = 0; i < stateCount; i += 8)
+            {
+                int bits = buffer.get() & 0xFF;
+                for (int j = 0; j < 8 && i + j < stateCount; ++j)
+                    if ((bits & 1 << j) != 0) DFA.setBit(accepting, i + j);
+            }
+
+            long tableSize = (long) stateCount * (symbolCount + 1);
+            if (tableSize >= Integer.MAX_VALUE || tableSize > buffer.remaining())
+                throw new IOManager.CorruptedFileException("Transition table too large: %d states * %d symbols", stateCount, symbolCount);
+
+            int[] offsets = new int[(int) tableSize + 1];
+            int[] targets = new int[(int) tableSize];
+            int size = 0;
+            for (int cell = 0; cell < tableSize; ++cell)
+            {
+                int count = readCount(buffer);
+                if (size + count > targets.length) targets = Arrays.copyOf(targets, Math.max(size + count, targets.length * 2));
+                for (int k = 0; k < count; ++k)
+                {
+                    int target = readVarint(buffer);
+                    if (target >= stateCount) throw new IOManager.CorruptedFileException("Invalid target %d in the transitions of \"%s\"", target, names[cell / (symbolCount + 1)]);
+                    targets[size++] = target;
+                }
+                offsets[cell + 1] = size;
+            }
+
+            Automaton automaton = new Automaton(names, symbols, offsets, Arrays.copyOf(targets, size), accepting, initialIndex);
+            Layout layout = (flags & FLAG_LAYOUT) != 0 ? Layout.read(buffer, stateCount) : null;
+            return new Content(automaton, layout);
+        }
+        catch (BufferUnderflowException e)
+        {
+            throw new IOManager.CorruptedFileException("Unexpected end of file");
+        }
+    }
+
+    private static void writeVarint(DataOutputStream out, int value) throws IOException
+    {
+        while ((value & ~0x7F) != 0)
+        {
+            out.write(value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarint(ByteBuffer buffer) throws IOManager.CorruptedFileException
+    {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7)
+        {
+            int b = buffer.get();
+            if (shift == 28 && (b & 0x78) != 0) break;
+
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IOManager.CorruptedFileException("Invalid varint at %d", buffer.position());
+    }
+
+    /**
+     * Read a number of items, each of them taking at least one byte in the rest of the buffer
+     */
+    private static int readCount(ByteBuffer buffer) throws IOManager.CorruptedFileException
+    {
+        int count = readVarint(buffer);
+        if (count > buffer.remaining()) throw new IOManager.CorruptedFileException("Invalid count %d at %d", count, buffer.position());
+        return count;
+    }
+
+    /**
+     * Content of a binary file
+     *
+     * @param automaton the automaton
+     * @param layout    the layout of the automaton, null if the file has none
+     */
+    public record Content(Automaton automaton, Layout layout)
+    {
+    }
+
+    /**
+     * Positions of the items of the GraphPane, states being referenced by their ids
+     * <p>
+     * In the file, it is made of the position of each node (NaN if the state has none), then the number of edges and
+     * for each of them its source, target and control point, then the number of self edges and for each of them its
+     * state, center and radius.
+     *
+     * @param nodePositions  the x and y of the node of each state
+     * @param edges          the source and target of each edge
+     * @param controlPoints  the x and y of the control point of each edge
+     * @param selfEdges      the state of each self edge
+     * @param selfEdgeShapes the center x, center y and radius of each self edge
+     */
+    public record Layout(double[] nodePositions, int[] edges, double[] controlPoints, int[] selfEdges, double[] selfEdgeShapes)
+    {
+        private void write(DataOutputStream out, int stateCount) throws IOException
+        {
+            for (int i = 0; i < 2 * stateCount; ++i) out.writeDouble(nodePositions[i]);
+
+            writeVarint(out, edges.length / 2);
+            for (int i = 0; i < edges.length / 2; ++i)
+            {
+                writeVarint(out, edges[2 * i]);
+                writeVarint(out, edges[2 * i + 1]);
+                out.writeDouble(controlPoints[2 * i]);
+                out.writeDouble(controlPoints[2 * i + 1]);
+            }
+
+            writeVarint(out, selfEdges.length);
+            for (int i = 0; i < selfEdges.length; ++i)
+            {
+                writeVarint(out, selfEdges[i]);
+                for (int j = 0; j < 3; ++j) out.writeDouble(selfEdgeShapes[3 * i + j]);
+            }
+        }
+
+        private static Layout read(ByteBuffer buffer, int stateCount) throws IOManager.CorruptedFileException
+        {
+            double[] nodePositions = new double[2 * stateCount];
+            for (int i = 0; i < nodePositions.length; ++i) nodePositions[i] = buffer.getDouble();
+
+            int edgeCount = readCount(buffer);
+            int[] edges = new int[2 * edgeCount];
+            double[] controlPoints = new double[2 * edgeCount];
+            for (int i = 0; i < 2 * edgeCount; i += 2)
+            {
+                edges[i] = readState(buffer, stateCount);
+                edges[i + 1] = readState(buffer, stateCount);
+                controlPoints[i] = buffer.getDouble();
+                controlPoints[i + 1] = buffer.getDouble();
+            }
+
+            int selfEdgeCount = readCount(buffer);
+            int[] selfEdges = new int[selfEdgeCount];
+            double[] selfEdgeShapes = new double[3 * selfEdgeCount];
+            for (int i = 0; i < selfEdgeCount; ++i)
+            {
+                selfEdges[i] = readState(buffer, stateCount);
+                for (int j = 0; j < 3; ++j) selfEdgeShapes[3 * i + j] = buffer.getDouble();
+            }
+
+            return new Layout(nodePositions, edges, controlPoints, selfEdges, selfEdgeShapes);
+        }
+
+        private static int readState(ByteBuffer buffer, int stateCount) throws IOManager.CorruptedFileException
+        {
+            int state = readVarint(buffer);
+            if (state >= stateCount) throw new IOManager.CorruptedFileException("Invalid state %d in the layout", state);
+            return state;
+        }
+    }
+}
@@ -1,49 +1,552 @@
 package ch.ludovic_mermod.dfasimulator.logic;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
 import java.util.*;
-import java.util.stream.Collectors;
 
+/**
+ * Compiled, immutable deterministic finite automaton
+ * <p>
+ * States are stored as dense ids, transitions in a flat table indexed by {@code state * symbolCount + symbol}
+ * and accepting states in a bitset, so that testing an input does not allocate anything.
+ * A missing transition (or a character outside the alphabet) rejects the input.
+ */
 public class DFA
 {
-    public final State                             initialState;
-    public final Set<State>                        states;
-    public final Set<State>                        acceptingStates;
-    public final Set<Character>                    alphabet;
-    public final Map<State, Map<Character, State>> transitionMap;
+    /**
+     * Transition value used when a state has no output for a symbol
+     */
+    public static final int NO_STATE = -1;
+    /**
+     * Default maximum number of states created when determinizing an NFA
+     */
+    public static final int DEFAULT_MAX_STATES = 1 << 20;
 
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final String[] stateNames;
+    private final char[]   symbols;
+    private final int[]    symbolIndices;
+    private final int[]    transitions;
+    private final long[]   accepting;
+    private final int      initialIndex;
+
+    private volatile Map<String, Integer> stateIndices;
+    private volatile long[]               deadStates;
+
+    /**
+     * Constructs a DFA from the names of its components
+     *
+     * @param initialState    name of the initial state
+     * @param states          names of all states
+     * @param acceptingStates names of the accepting states
+     * @param alphabet        symbols of the alphabet
+     * @param transitionMap   for each state name, the target of each symbol
+     */
     public DFA(String initialState, Set<String> states, Set<String> acceptingStates, Set<Character> alphabet, Map<String, Map<Character, String>> transitionMap)
     {
-        this.initialState = new State(initialState);
-        this.states = Set.copyOf(states.stream().map(State::new).collect(Collectors.toSet()));
-        this.acceptingStates = Set.copyOf(acceptingStates.stream().map(State::new).collect(Collectors.toSet()));
-        this.alphabet = Set.copyOf(alphabet);
-        this.transitionMap = copyTransitionMap(transitionMap);
+        Objects.requireNonNull(initialState, "initialState");
+
+        Map<String, Integer> stateIndices = new HashMap<>();
+        List<String> names = new ArrayList<>();
+        new TreeSet<>(states).forEach(s -> intern(s, stateIndices, names));
+        intern(initialState, stateIndices, names);
+        acceptingStates.forEach(s -> intern(s, stateIndices, names));
+        transitionMap.forEach((s, m) -> {
+            intern(s, stateIndices, names);
+            m.values().forEach(t -> intern(t, stateIndices, names));
+        });
+        this.stateIndices = stateIndices;
+
+        stateNames = names.toArray(new String[0]);
+        symbols = toSymbols(alphabet);
+        symbolIndices = createSymbolIndices(symbols);
+        transitions = new int[checkedTableSize(stateNames.length, symbols.length)];
+        Arrays.fill(transitions, NO_STATE);
+        accepting = new long[wordCount(stateNames.length)];
+        initialIndex = stateIndices.get(initialState);
+
+        transitionMap.forEach((s, m) -> {
+            int source = stateIndices.get(s);
+            m.forEach((c, t) -> {
+                int symbol = symbolIndex(c);
+                if (symbol != NO_STATE && t != null)
+                    transitions[source * symbols.length + symbol] = stateIndices.get(t);
+            });
+        });
+        acceptingStates.forEach(s -> setBit(accepting, stateIndices.get(s)));
+    }
+
+    /**
+     * Constructs a DFA directly from its compiled tables, the arrays are used and not copied
+     */
+    DFA(String[] stateNames, char[] symbols, int[] transitions, long[] accepting, int initialIndex)
+    {
+        this.stateNames = stateNames;
+        this.symbols = symbols;
+        this.symbolIndices = createSymbolIndices(symbols);
+        this.transitions = transitions;
+        this.accepting = accepting;
+        this.initialIndex = initialIndex;
     }
 
-    private Map<State, Map<Character, State>> copyTransitionMap(Map<String, Map<Character, String>> transitionMap)
+    /**
+     * Creates a DFA from a transition table, the arrays are copied
+     *
+     * @param stateNames   names of the states, indexed by id
+     * @param symbols      symbols of the alphabet, indexed by symbol index
+     * @param transitions  target of each transition at {@code state * symbols.length + symbol}, or NO_STATE
+     * @param accepting    ids of the accepting states
+     * @param initialIndex id of the initial state
+     * @return the DFA
+     * @throws IllegalArgumentException if the table does not match the states and symbols
+     */
+    public static DFA fromTable(String[] stateNames, char[] symbols, int[] transitions, BitSet accepting, int initialIndex)
     {
-        return Map.copyOf(transitionMap
-                .entrySet()
-                .stream()
-                .map(e -> Map.entry(
-                        e.getKey(),
-                        e.getValue()
-                                .entrySet().stream()
-                                .map(entry -> Map.entry(entry.getKey(), new State(entry.getValue())))
-                                .collect(TreeMap<Character, State>::new, (m, entry) -> m.put(entry.getKey(), entry.getValue()), TreeMap::putAll)))
-                .collect(() -> new TreeMap<>(Comparator.comparing((State s) -> s.name)), (m, e) -> m.put(new State(e.getKey()), e.getValue()), TreeMap::putAll));
+        if (transitions.length != checkedTableSize(stateNames.length, symbols.length))
+            throw new IllegalArgumentException("Expected " + stateNames.length * symbols.length + " transitions, got " + transitions.length);
+        if (initialIndex < 0 || initialIndex >= stateNames.length)
+            throw new IllegalArgumentException("Invalid initial state " + initialIndex);
+        if (accepting.length() > stateNames.length)
+            throw new IllegalArgumentException("Invalid accepting state " + (accepting.length() - 1));
+        for (int target : transitions)
+            if (target < NO_STATE || target >= stateNames.length) throw new IllegalArgumentException("Invalid target state " + target);
+        if (new String(symbols).chars().distinct().count() != symbols.length)
+            throw new IllegalArgumentException("Duplicate symbols in " + Arrays.toString(symbols));
+
+        return new DFA(stateNames.clone(), symbols.clone(), transitions.clone(), Arrays.copyOf(accepting.toLongArray(), wordCount(stateNames.length)), initialIndex);
     }
 
-    public boolean isAccepted(String input)
+    /**
+     * Compile the current state of a FiniteAutomaton, through its snapshot
+     * It must be called from the thread modifying the automaton, as {@link FiniteAutomaton#snapshot()}
+     * For each symbol, only the first target of a transition is kept
+     *
+     * @param finiteAutomaton the automaton to compile
+     * @return the compiled DFA
+     * @throws IllegalStateException if the automaton has no initial state
+     */
+    public static DFA fromFiniteAutomaton(FiniteAutomaton finiteAutomaton)
+    {
+        return fromAutomaton(finiteAutomaton.snapshot());
+    }
+    /**
+     * Compile an Automaton
+     * As for a FiniteAutomaton, only the first target of a transition is kept and ε-transitions are ignored
+     *
+     * @param automaton the automaton to compile
+     * @return the compiled DFA
+     * @throws IllegalStateException if the automaton has no initial state
+     */
+    public static DFA fromAutomaton(Automaton automaton)
     {
-        if (!input.chars().allMatch(i -> alphabet.contains((char) i))) return false;
+        if (automaton.initialIndex() == NO_STATE) throw new IllegalStateException("The automaton has no initial state");
 
-        State state = initialState;
+        final int stateCount = automaton.stateCount(), symbolCount = automaton.symbolCount();
+        String[] names = new String[stateCount];
+        char[] symbols = new char[symbolCount];
+        int[] transitions = new int[checkedTableSize(stateCount, symbolCount)];
+        long[] accepting = new long[wordCount(stateCount)];
+        for (int i = 0; i < symbolCount; ++i) symbols[i] = automaton.symbol(i);
 
-        for (var c : input.toCharArray())
-            state = transitionMap.get(state).get(c);
+        for (int i = 0; i < stateCount; ++i)
+        {
+            names[i] = automaton.stateName(i);
+            if (automaton.isAccepting(i)) setBit(accepting, i);
 
-        return acceptingStates.contains(state);
+            for (int j = 0; j < symbolCount; ++j)
+                transitions[i * symbolCount + j] = automaton.firstTarget(i, j);
+        }
+
+        return new DFA(names, symbols, transitions, accepting, automaton.initialIndex());
+    }
+
+    /**
+     * Determinize an NFA with the subset construction
+     * Only the subsets reachable from the initial state are created, the empty subset becomes a missing transition
+     *
+     * @param nfa       the NFA to determinize
+     * @param maxStates the maximum number of states of the DFA
+     * @return the DFA accepting the same inputs as the NFA
+     * @throws TooManyStatesException if the DFA would have more than maxStates states
+     */
+    public static DFA fromNFA(NFA nfa, int maxStates) throws TooManyStatesException
+    {
+        return new SubsetConstruction(nfa, maxStates).run();
+    }
+
+    private static char[] toSymbols(Collection<Character> alphabet)
+    {
+        char[] symbols = new char[alphabet.size()];
+        int i = 0;
+        for (char c : new TreeSet<>(alphabet)) symbols[i++] = c;
+        return symbols;
+    }
+    private static int[] createSymbolIndices(char[] symbols)
+    {
+        int max = -1;
+        for (char c : symbols) max = Math.max(max, c);
+
+        int[] indices = new int[max + 1];
+        Arrays.fill(indices, NO_STATE);
+        for (int i = 0; i < symbols.length; ++i) indices[symbols[i]] = i;
+        return indices;
+    }
+    private static int checkedTableSize(int stateCount, int symbolCount)
+    {
+        long size = (long) stateCount * symbolCount;
+        if (size > Integer.MAX_VALUE) throw new IllegalArgumentException("Transition table too large: " + stateCount + " states * " + symbolCount + " symbols");
+        return (int) size;
+    }
+    static int wordCount(int bits)
+    {
+        return (bits + 63) >>> 6;
+    }
+    static void setBit(long[] words, int bit)
+    {
+        words[bit >>> 6] |= 1L << bit;
+    }
+    static boolean getBit(long[] words, int bit)
+    {
+        return (words[bit >>> 6] & 1L << bit) != 0;
+    }
+
+    private static void intern(String name, Map<String, Integer> stateIndices, List<String> names)
+    {
+        if (name != null && !stateIndices.containsKey(name))
+        {
+            stateIndices.put(name, names.size());
+            names.add(name);
+        }
+    }
+
+    /**
+     * Test whether an input is accepted
+     *
+     * @param input the input to test
+     * @return whether the input is accepted
+     */
+    public boolean isAccepted(CharSequence input)
+    {
+        final int[] transitions = this.transitions, symbolIndices = this.symbolIndices;
+        final int symbolCount = symbols.length;
+
+        int state = initialIndex;
+        for (int i = 0, length = input.length(); i < length; ++i)
+        {
+            char c = input.charAt(i);
+            if (c >= symbolIndices.length) return false;
+
+            int symbol = symbolIndices[c];
+            if (symbol == NO_STATE) return false;
+
+            state = transitions[state * symbolCount + symbol];
+            if (state == NO_STATE) return false;
+        }
+
+        return isAccepting(state);
+    }
+
+    /**
+     * Test whether the content of a Reader is accepted, reading it in chunks
+     * Reading stops as soon as the input cannot be accepted anymore, the reader is not closed
+     *
+     * @param reader the input to test
+     * @return whether the input is accepted
+     * @throws IOException if the reader throws one
+     */
+    public boolean isAccepted(Reader reader) throws IOException
+    {
+        char[] buffer = new char[BUFFER_SIZE];
+        int state = initialIndex;
+
+        for (int read; (read = reader.read(buffer)) != -1; )
+        {
+            state = run(state, buffer, 0, read);
+            if (isDead(state)) return false;
+        }
+
+        return !isDead(state) && isAccepting(state);
+    }
+    /**
+     * Test whether the content of an InputStream is accepted, reading it in chunks
+     * Reading stops as soon as the input cannot be accepted anymore, the stream is not closed
+     *
+     * @param stream  the input to test
+     * @param charset the charset of the input
+     * @return whether the input is accepted
+     * @throws IOException if the stream throws one, or if the input is not valid in the charset
+     */
+    public boolean isAccepted(InputStream stream, Charset charset) throws IOException
+    {
+        return isAccepted(Channels.newChannel(stream), charset);
+    }
+    /**
+     * Test whether the content of a channel is accepted, reading it in chunks
+     * Reading stops as soon as the input cannot be accepted anymore, the channel is not closed
+     *
+     * @param channel the input to test
+     * @param charset the charset of the input
+     * @return whether the input is accepted
+     * @throws IOException if the channel throws one, or if the input is not valid in the charset
+     */
+    public boolean isAccepted(ReadableByteChannel channel, Charset charset) throws IOException
+    {
+        CharsetDecoder decoder = charset.newDecoder();
+        ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+        CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+        int state = initialIndex;
+
+        boolean endOfInput = false;
+        CoderResult result;
+        while (!endOfInput)
+        {
+            endOfInput = channel.read(bytes) == -1;
+            bytes.flip();
+
+            do
+            {
+                result = decoder.decode(bytes, chars, endOfInput);
+                if (result.isError()) result.throwException();
+
+                state = run(state, chars);
+                if (isDead(state)) return false;
+            }
+            while (result.isOverflow());
+
+            bytes.compact();
+        }
+
+        do
+        {
+            result = decoder.flush(chars);
+            state = run(state, chars);
+        }
+        while (result.isOverflow());
+
+        return !isDead(state) && isAccepting(state);
+    }
+
+    /**
+     * Read the decoded characters of a buffer from a state, and clear the buffer
+     */
+    private int run(int state, CharBuffer chars)
+    {
+        chars.flip();
+        state = run(state, chars.array(), chars.arrayOffset() + chars.position(), chars.arrayOffset() + chars.limit());
+        chars.clear();
+        return state;
+    }
+
+    /**
+     * Read characters from a state
+     *
+     * @return the state reached, or NO_STATE if the input is rejected
+     */
+    private int run(int state, char[] chars, int from, int to)
+    {
+        final int[] transitions = this.transitions, symbolIndices = this.symbolIndices;
+        final int symbolCount = symbols.length;
+
+        for (int i = from; i < to && state != NO_STATE; ++i)
+        {
+            char c = chars[i];
+            int symbol = c < symbolIndices.length ? symbolIndices[c] : NO_STATE;
+            state = symbol == NO_STATE ? NO_STATE : transitions[state * symbolCount + symbol];
+        }
+
+        return state;
+    }
+
+    /**
+     * @param state id of a state, or NO_STATE
+     * @return whether no input can be accepted from the state
+     */
+    public boolean isDead(int state)
+    {
+        return state == NO_STATE || getBit(deadStates(), state);
+    }
+    /**
+     * Find the states from which no accepting state can be reached, with a backward search from the accepting states
+     */
+    private long[] deadStates()
+    {
+        long[] dead = deadStates;
+        if (dead != null) return dead;
+
+        final int stateCount = stateNames.length, symbolCount = symbols.length;
+        int[] offsets = new int[stateCount + 1], predecessors = new int[transitions.length];
+        for (int target : transitions)
+            if (target != NO_STATE) ++offsets[target + 1];
+        for (int i = 0; i < stateCount; ++i) offsets[i + 1] += offsets[i];
+
+        int[] position = Arrays.copyOf(offsets, stateCount);
+        for (int i = 0; i < transitions.length; ++i)
+            if (transitions[i] != NO_STATE) predecessors[position[transitions[i]]++] = i / symbolCount;
+
+        long[] alive = Arrays.copyOf(accepting, accepting.length);
+        int[] queue = new int[stateCount];
+        int head = 0, tail = 0;
+        for (int i = 0; i < stateCount; ++i)
+            if (isAccepting(i)) queue[tail++] = i;
+
+        while (head < tail)
+        {
+            int state = queue[head++];
+            for (int k = offsets[state]; k < offsets[state + 1]; ++k)
+                if (!getBit(alive, predecessors[k]))
+                {
+                    setBit(alive, predecessors[k]);
+                    queue[tail++] = predecessors[k];
+                }
+        }
+
+        dead = new long[alive.length];
+        for (int i = 0; i < stateCount; ++i)
+            if (!getBit(alive, i)) setBit(dead, i);
+
+        return deadStates = dead;
+    }
+
+    /**
+     * Minimize this DFA with Hopcroft's algorithm
+     * Unreachable states are removed and equivalent states are merged. States from which no input is accepted are
+     * removed only if this DFA is partial (has missing transitions): a complete DFA stays complete, its dead states
+     * being merged into a single one.
+     *
+     * @return the minimal DFA accepting the same inputs, and the name of the state replacing each state of this DFA
+     */
+    public Minimization minimize()
+    {
+        return new PartitionRefinement(this).run();
+    }
+
+    /**
+     * @return the number of states
+     */
+    public int stateCount()
+    {
+        return stateNames.length;
+    }
+    /**
+     * @return the number of symbols in the alphabet
+     */
+    public int symbolCount()
+    {
+        return symbols.length;
+    }
+    /**
+     * @return the id of the initial state
+     */
+    public int initialIndex()
+    {
+        return initialIndex;
+    }
+    /**
+     * @param c a character
+     * @return the index of c in the alphabet, or NO_STATE if it is not part of it
+     */
+    public int symbolIndex(char c)
+    {
+        return c < symbolIndices.length ? symbolIndices[c] : NO_STATE;
+    }
+    /**
+     * @param index index of a symbol
+     * @return the symbol at the given index
+     */
+    public char symbol(int index)
+    {
+        return symbols[index];
+    }
+    /**
+     * @param state  id of the source state
+     * @param symbol index of the symbol
+     * @return the id of the target state, or NO_STATE
+     */
+    public int next(int state, int symbol)
+    {
+        return transitions[state * symbols.length + symbol];
+    }
+    /**
+     * @param state id of a state
+     * @return whether the state is accepting
+     */
+    public boolean isAccepting(int state)
+    {
+        return getBit(accepting, state);
+    }
+    /**
+     * @param state id of a state
+     * @return the name of the state
+     */
+    public String stateName(int state)
+    {
+        return stateNames[state];
+    }
+    /**
+     * @param name name of a state
+     * @return the id of the state, or NO_STATE if there is none
+     */
+    public int stateIndex(String name)
+    {
+        Map<String, Integer> indices = stateIndices;
+        if (indices == null)
+        {
+            // Built on demand, as large compiled DFAs are usually only used through their ids
+            // The map is only published once filled, so that other threads never see it partially built
+            indices = new HashMap<>();
+            for (int i = 0; i < stateNames.length; ++i) indices.put(stateNames[i], i);
+            stateIndices = indices;
+        }
+
+        return indices.getOrDefault(name, NO_STATE);
+    }
+
+    public State initialState()
+    {
+        return new State(stateNames[initialIndex]);
+    }
+    public Set<State> states()
+    {
+        Set<State> states = new HashSet<>();
+        for (String name : stateNames) states.add(new State(name));
+        return Collections.unmodifiableSet(states);
+    }
+    public Set<State> acceptingStates()
+    {
+        Set<State> states = new HashSet<>();
+        for (int i = 0; i < stateNames.length; ++i)
+            if (isAccepting(i)) states.add(new State(stateNames[i]));
+        return Collections.unmodifiableSet(states);
+    }
+    public Set<Character> alphabet()
+    {
+        Set<Character> alphabet = new TreeSet<>();
+        for (char c : symbols) alphabet.add(c);
+        return Collections.unmodifiableSet(alphabet);
+    }
+    /**
+     * @return a copy of the transition table, as a map
+     */
+    public Map<State, Map<Character, State>> transitionMap()
+    {
+        Map<State, Map<Character, State>> map = new TreeMap<>(Comparator.comparing(State::name));
+        for (int i = 0; i < stateNames.length; ++i)
+        {
+            Map<Character, State> row = new TreeMap<>();
+            for (int j = 0; j < symbols.length; ++j)
+                if (next(i, j) != NO_STATE) row.put(symbols[j], new State(stateNames[next(i, j)]));
+            map.put(new State(stateNames[i]), Collections.unmodifiableMap(row));
+        }
+        return Collections.unmodifiableMap(map);
     }
 
     public State state(String name)
@@ -66,11 +569,12 @@ public class DFA
         }
         public boolean isInitial()
         {
-            return name.equals(initialState.name);
+            return name.equals(stateNames[initialIndex]);
         }
         public boolean isAccepting()
         {
-            return acceptingStates.stream().anyMatch(s -> s.name.equals(name));
+            int index = stateIndex(name);
+            return index != NO_STATE && DFA.this.isAccepting(index);
         }
         public DFA dfa()
         {
@@ -91,4 +595,24 @@ public class DFA
             return Objects.equals(name, state.name);
         }
     }
+
+    /**
+     * Result of a minimization
+     *
+     * @param dfa          the minimal DFA
+     * @param stateMapping for each state of the original DFA that was kept, the name of the state replacing it
+     */
+    public record Minimization(DFA dfa, Map<String, String> stateMapping)
+    {
+    }
+
+    public static class TooManyStatesException extends Exception
+    {
+        private static final long serialVersionUID = 1L;
+
+        public TooManyStatesException(int maxStates)
+        {
+            super(String.format("The automaton has more than %d states", maxStates));
+        }
+    }
 }
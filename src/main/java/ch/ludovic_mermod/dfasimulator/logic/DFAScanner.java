@@ -0,0 +1,233 @@
+package ch.ludovic_mermod.dfasimulator.logic;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.function.LongConsumer;
+
+/**
+ * Run a compiled DFA over local files, either on the whole file or on each of its lines
+ * <p>
+ * When the alphabet only contains ASCII characters and the charset is ASCII-compatible, the file is memory-mapped and
+ * its bytes are used directly as symbols: nothing is decoded. Otherwise, the file is decoded through a Reader.
+ * In line mode, lines are separated by {@code \n}, a {@code \r} right before it (or at the end of the file) is not part of the line.
+ * This class does not depend on JavaFX.
+ */
+public class DFAScanner
+{
+    private static final long         MAP_SIZE                  = 1L << 28;
+    private static final Set<Charset> ASCII_COMPATIBLE_CHARSETS = Set.of(StandardCharsets.US_ASCII, StandardCharsets.ISO_8859_1, StandardCharsets.UTF_8);
+
+    private final DFA     dfa;
+    private final Charset charset;
+    private final int[]   byteSymbols;
+    private final int[]   transitions;
+    private final int     symbolCount;
+
+    /**
+     * Constructs a DFAScanner reading UTF-8 files
+     *
+     * @param dfa the DFA to run
+     */
+    public DFAScanner(DFA dfa)
+    {
+        this(dfa, StandardCharsets.UTF_8);
+    }
+    /**
+     * Constructs a DFAScanner
+     *
+     * @param dfa     the DFA to run
+     * @param charset the charset of the scanned files
+     */
+    public DFAScanner(DFA dfa, Charset charset)
+    {
+        this.dfa = dfa;
+        this.charset = charset;
+        symbolCount = dfa.symbolCount();
+
+        boolean ascii = ASCII_COMPATIBLE_CHARSETS.contains(charset);
+        for (int i = 0; i < symbolCount; ++i) ascii &= dfa.symbol(i) < 0x80;
+
+        if (ascii)
+        {
+            byteSymbols = new int[256];
+            for (int b = 0; b < 256; ++b) byteSymbols[b] = dfa.symbolIndex((char) b);
+            Arrays.fill(byteSymbols, 0x80, 256, DFA.NO_STATE);
+
+            // Transitions to dead states are removed, so that a rejected input is detected as soon as possible
+            transitions = new int[dfa.stateCount() * symbolCount];
+            for (int state = 0; state < dfa.stateCount(); ++state)
+                for (int symbol = 0; symbol < symbolCount; ++symbol)
+                {
+                    int target = dfa.next(state, symbol);
+                    transitions[state * symbolCount + symbol] = dfa.isDead(target) ? DFA.NO_STATE : target;
+                }
+        }
+        else
+        {
+            byteSymbols = null;
+            transitions = null;
+        }
+    }
+
+    /**
+     * @return whether files are scanned byte by byte, without decoding
+     */
+    public boolean isByteMode()
+    {
+        return byteSymbols != null;
+    }
+
+    /**
+     * Test whether the content of a file is accepted
+     * Scanning stops as soon as the content cannot be accepted anymore, only the bytes read are counted in the result
+     *
+     * @param path the file to scan
+     * @return the result of the scan, with a single input
+     * @throws IOException if the file cannot be read
+     */
+    public ScanResult scanFile(Path path) throws IOException
+    {
+        long start = System.nanoTime();
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            long size = channel.size(), scanned = 0;
+            boolean accepted;
+
+            if (!isByteMode())
+            {
+                accepted = dfa.isAccepted(channel, charset);
+                scanned = channel.position();
+            }
+            else
+            {
+                int state = dfa.isDead(dfa.initialIndex()) ? DFA.NO_STATE : dfa.initialIndex();
+
+                for (long position = 0; position < size && state != DFA.NO_STATE; position += MAP_SIZE)
+                {
+                    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_SIZE, size - position));
+                    int i = 0;
+                    for (int limit = buffer.limit(); i < limit && state != DFA.NO_STATE; ++i)
+                    {
+                        int symbol = byteSymbols[buffer.get(i) & 0xFF];
+                        state = symbol == DFA.NO_STATE ? DFA.NO_STATE : transitions[state * symbolCount + symbol];
+                    }
+                    scanned = position + i;
+                }
+
+                accepted = state != DFA.NO_STATE && dfa.isAccepting(state);
+            }
+
+            return new ScanResult(scanned, 1, accepted ? 1 : 0, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Test whether each line of a file is accepted
+     *
+     * @param path          the file to scan
+     * @param acceptedLines receives the index (starting at 0) of each accepted line, in order, may be null
+     * @return the result of the scan, with one input per line
+     * @throws IOException if the file cannot be read
+     */
+    public ScanResult scanLines(Path path, LongConsumer acceptedLines) throws IOException
+    {
+        long start = System.nanoTime();
+        LongConsumer consumer = acceptedLines == null ? l -> {} : acceptedLines;
+
+        if (!isByteMode())
+        {
+            long lines = 0, accepted = 0;
+            try (LineReader reader = new LineReader(Files.newBufferedReader(path, charset)))
+            {
+                for (String line; (line = reader.readLine()) != null; ++lines)
+                    if (dfa.isAccepted(line))
+                    {
+                        consumer.accept(lines);
+                        ++accepted;
+                    }
+            }
+            return new ScanResult(Files.size(path), lines, accepted, System.nanoTime() - start);
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            final int initial = dfa.isDead(dfa.initialIndex()) ? DFA.NO_STATE : dfa.initialIndex();
+            long size = channel.size(), lines = 0, accepted = 0;
+            int state = initial, stateBeforeCR = initial;
+            boolean lastWasCR = false, lineStarted = false;
+
+            for (long position = 0; position < size; position += MAP_SIZE)
+            {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_SIZE, size - position));
+                for (int i = 0, limit = buffer.limit(); i < limit; ++i)
+                {
+                    int b = buffer.get(i) & 0xFF;
+                    if (b == '\n')
+                    {
+                        int end = lastWasCR ? stateBeforeCR : state;
+                        if (end != DFA.NO_STATE && dfa.isAccepting(end))
+                        {
+                            consumer.accept(lines);
+                            ++accepted;
+                        }
+
+                        ++lines;
+                        state = initial;
+                        lastWasCR = lineStarted = false;
+                        continue;
+                    }
+
+                    lineStarted = true;
+                    lastWasCR = b == '\r';
+                    if (lastWasCR) stateBeforeCR = state;
+                    if (state == DFA.NO_STATE) continue;
+
+                    int symbol = byteSymbols[b];
+                    state = symbol == DFA.NO_STATE ? DFA.NO_STATE : transitions[state * symbolCount + symbol];
+                }
+            }
+
+            // Last line, not terminated by a line feed
+            if (lineStarted)
+            {
+                int end = lastWasCR ? stateBeforeCR : state;
+                if (end != DFA.NO_STATE && dfa.isAccepting(end))
+                {
+                    consumer.accept(lines);
+                    ++accepted;
+                }
+                ++lines;
+            }
+
+            return new ScanResult(size, lines, accepted, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Result of a scan
+     *
+     * @param bytes    number of bytes read
+     * @param inputs   number of inputs tested (1 for a whole file, the number of lines otherwise)
+     * @param accepted number of accepted inputs
+     * @param nanos    duration of the scan, in nanoseconds
+     */
+    public record ScanResult(long bytes, long inputs, long accepted, long nanos)
+    {
+        /**
+         * @return the throughput of the scan, in megabytes (10^6 bytes) per second
+         */
+        public double megabytesPerSecond()
+        {
+            return nanos == 0 ? 0 : bytes * 1e3 / nanos;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package ch.ludovic_mermod.dfasimulator.logic;
+
+import ch.ludovic_mermod.dfasimulator.utils.PropertiesMap;
+import javafx.beans.value.ChangeListener;
+import javafx.collections.ListChangeListener;
+import javafx.collections.SetChangeListener;
+
+import java.util.*;
+
+/**
+ * Keep track of the errors preventing a FiniteAutomaton from being a DFA
+ * <p>
+ * The validator listens to the states, their transition maps and names, the alphabet and the initial state, and only re-checks
+ * what changed: a transition only re-checks its source State, a change of the alphabet re-checks every State.
+ * Whether the automaton is a valid DFA is then known without scanning it.
+ */
+public class DFAValidator
+{
+    private final FiniteAutomaton finiteAutomaton;
+
+    private final Map<State, Simulation.Error>     stateErrors;
+    private final Map<State, TransitionListeners> transitionListeners;
+    private       long                            changeCount;
+
+    /**
+     * Constructs a DFAValidator, the automaton is checked once and then followed
+     *
+     * @param finiteAutomaton the automaton to validate
+     */
+    public DFAValidator(FiniteAutomaton finiteAutomaton)
+    {
+        this.finiteAutomaton = finiteAutomaton;
+        stateErrors = new IdentityHashMap<>();
+        transitionListeners = new IdentityHashMap<>();
+
+        finiteAutomaton.states().forEach(this::addState);
+        finiteAutomaton.states().addListener((ListChangeListener<? super State>) change ->
+        {
+            while (change.next())
+            {
+                change.getRemoved().forEach(this::removeState);
+                change.getAddedSubList().forEach(this::addState);
+            }
+        });
+        finiteAutomaton.alphabet().addListener((SetChangeListener<? super Character>) change -> finiteAutomaton.states().forEach(this::check));
+        finiteAutomaton.initialStateProperty().addListener((o, ov, nv) ->
+        {
+            if ((ov == null) != (nv == null)) ++changeCount;
+        });
+    }
+
+    /**
+     * @return whether the automaton is a valid DFA
+     */
+    public boolean isValid()
+    {
+        return stateErrors.isEmpty() && finiteAutomaton.initialState() != null;
+    }
+    /**
+     * @return the errors of the automaton, those of the states first, in the order of the states
+     */
+    public List<Simulation.Error> errors()
+    {
+        List<Simulation.Error> errors = new ArrayList<>();
+        if (!stateErrors.isEmpty())
+            for (State state : finiteAutomaton.states())
+            {
+                Simulation.Error error = stateErrors.get(state);
+                if (error != null) errors.add(error);
+            }
+
+        if (finiteAutomaton.initialState() == null) errors.add(new Simulation.Error(Simulation.ErrorCode.NO_INITIAL_STATE, null));
+        return errors;
+    }
+    /**
+     * @return a counter increased each time the errors change, so that they are only printed again when needed
+     */
+    public long changeCount()
+    {
+        return changeCount;
+    }
+
+    private void addState(State state)
+    {
+        if (state == null || transitionListeners.containsKey(state)) return;
+
+        // The errors are printed with the name of the State, so they change along with it
+        TransitionListeners listeners = new TransitionListeners((p, k, o, n) -> check(state), (k, p) -> check(state), (o, ov, nv) ->
+        {
+            if (stateErrors.containsKey(state)) ++changeCount;
+        });
+        state.transitionMap().addListener(listeners.change());
+        state.transitionMap().addListener(listeners.remove());
+        state.nameProperty().addListener(listeners.name());
+        transitionListeners.put(state, listeners);
+        check(state);
+    }
+    private void removeState(State state)
+    {
+        TransitionListeners listeners = transitionListeners.remove(state);
+        if (listeners == null) return;
+
+        state.transitionMap().removeListener(listeners.change());
+        state.transitionMap().removeListener(listeners.remove());
+        state.nameProperty().removeListener(listeners.name());
+        if (stateErrors.remove(state) != null) ++changeCount;
+    }
+
+    /**
+     * Check the transitions of a State against the alphabet, and record the change of its error if any
+     */
+    private void check(State state)
+    {
+        if (!transitionListeners.containsKey(state)) return;
+
+        Simulation.Error error = computeError(state, finiteAutomaton.alphabet());
+        Simulation.Error previous = error == null ? stateErrors.remove(state) : stateErrors.put(state, error);
+
+        if (previous == null ? error != null : error == null || !Arrays.deepEquals(previous.data(), error.data())) ++changeCount;
+    }
+
+    /**
+     * @param state    the State to check
+     * @param alphabet the alphabet of the automaton
+     * @return the error of the State, or null if its outputs match the alphabet
+     */
+    static Simulation.Error computeError(State state, Set<Character> alphabet)
+    {
+        if (!state.epsilonTransitions().isEmpty())
+            return new Simulation.Error(Simulation.ErrorCode.NODE_DOES_NOT_MATCH_ALPHABET, new Object[]{state, true});
+
+        List<Character> elements = state.transitionMap().entrySet().stream().filter(e -> e.getKey() != State.EPSILON && e.getValue().get() != null).map(Map.Entry::getKey).toList();
+        if (elements.size() > alphabet.size())
+            return new Simulation.Error(Simulation.ErrorCode.NODE_DOES_NOT_MATCH_ALPHABET, new Object[]{state, true});
+
+        if (elements.size() < alphabet.size())
+        {
+            var missingElements = new TreeSet<>(alphabet);
+            elements.forEach(missingElements::remove);
+            return new Simulation.Error(Simulation.ErrorCode.NODE_DOES_NOT_MATCH_ALPHABET, new Object[]{state, false, missingElements});
+        }
+
+        return null;
+    }
+
+    private record TransitionListeners(PropertiesMap.PropertyChangeListener<Character, List<State>> change,
+                                       PropertiesMap.PropertyRemoveListener<Character, List<State>> remove,
+                                       ChangeListener<String> name) {}
+}
@@ -7,14 +7,16 @@ import ch.ludovic_mermod.dfasimulator.json.JSONElement;
 import ch.ludovic_mermod.dfasimulator.json.JSONObject;
 import ch.ludovic_mermod.dfasimulator.json.JSONPrimitive;
 import ch.ludovic_mermod.dfasimulator.utils.CustomBindings;
+import ch.ludovic_mermod.dfasimulator.utils.PropertiesMap;
 import javafx.application.Platform;
 import javafx.beans.binding.Binding;
 import javafx.beans.binding.StringBinding;
 import javafx.beans.property.*;
+import javafx.beans.value.ChangeListener;
 import javafx.collections.*;
 
-import java.util.Objects;
-import java.util.TreeSet;
+import java.util.*;
+import java.util.function.IntConsumer;
 
 /**
  * Represent a deterministic FiniteAutomaton
@@ -26,6 +28,11 @@ public class FiniteAutomaton
     public static final String JSON_INITIAL  = "initial";
     public static final String JSON_STATES   = "states";
 
+    /**
+     * Number of changes kept in the journal
+     */
+    public static final int JOURNAL_SIZE = 1024;
+
     private final JSONObject jsonObject;
 
     private final ObjectProperty<State>    initialState;
@@ -33,6 +40,18 @@ public class FiniteAutomaton
     private final ObservableSet<Character> alphabet;
     private       MainPane                 mainPane;
 
+    // States by name, a name may briefly be shared while an invalid rename is reverted
+    private final Map<String, List<State>>   statesByName;
+    private final Map<State, StateListeners> stateListeners;
+
+    // Last changes, the oldest first, their revisions are consecutive and end with the current one
+    private final ArrayDeque<Change> journal;
+    private       long               revision;
+
+    // Last snapshot, valid as long as the revision did not change
+    private Automaton snapshot;
+    private long      snapshotRevision;
+
     /**
      * Constructs a FiniteAutomaton
      */
@@ -42,23 +61,29 @@ public class FiniteAutomaton
         states = new SimpleListProperty<>(this, "states", FXCollections.observableArrayList());
         alphabet = new SimpleSetProperty<>(FXCollections.observableSet(new TreeSet<>()));
 
+        journal = new ArrayDeque<>(JOURNAL_SIZE);
         initialState.addListener((o, ov, nv) ->
         {
+            record(ChangeType.INITIAL_CHANGED, nv, null);
             if (!states.contains(nv) && !states.isEmpty())
                 Platform.runLater(() -> initialState.set(ov));
         });
 
+        statesByName = new HashMap<>();
+        stateListeners = new IdentityHashMap<>();
         states.addListener((ListChangeListener<? super State>) change ->
         {
-            change.next();
-            if (change.wasAdded())
-                change.getAddedSubList().stream()
-                        .filter(Objects::nonNull)
-                        .forEach(s -> s.nameProperty().addListener((o, ov, nv) -> validateNameChange(s, ov)));
+            while (change.next())
+            {
+                change.getRemoved().stream().filter(Objects::nonNull).forEach(this::unregisterState);
+                change.getAddedSubList().stream().filter(Objects::nonNull).forEach(this::registerState);
+            }
         });
 
         alphabet.addListener((SetChangeListener<? super Character>) change ->
         {
+            record(ChangeType.ALPHABET_CHANGED, null, change.wasAdded() ? change.getElementAdded() : change.getElementRemoved());
+
             if (change.wasAdded())
                 states.forEach(s -> s.transitionMap().setValue(change.getElementAdded(), null));
 
@@ -124,9 +149,89 @@ public class FiniteAutomaton
         return CustomBindings.create(() -> alphabet.size() == 2 && alphabet.contains('0') && alphabet.contains('1'), alphabet);
     }
 
+    private void registerState(State state)
+    {
+        if (stateListeners.containsKey(state)) return;
+
+        StateListeners listeners = new StateListeners(
+                (o, ov, nv) ->
+                {
+                    unindex(state, ov);
+                    index(state, nv);
+                    record(ChangeType.STATE_RENAMED, state, null);
+                    validateNameChange(state, ov);
+                },
+                (o, ov, nv) -> record(ChangeType.ACCEPTING_CHANGED, state, null),
+                (p, k, o, n) -> record(ChangeType.TRANSITION_SET, state, k),
+                (k, p) -> record(ChangeType.TRANSITION_SET, state, k));
+        stateListeners.put(state, listeners);
+
+        state.nameProperty().addListener(listeners.name());
+        state.isAcceptingProperty().addListener(listeners.accepting());
+        state.transitionMap().addListener(listeners.transitionChange());
+        state.transitionMap().addListener(listeners.transitionRemove());
+        index(state, state.name());
+        record(ChangeType.STATE_ADDED, state, null);
+    }
+    private void unregisterState(State state)
+    {
+        StateListeners listeners = stateListeners.remove(state);
+        if (listeners == null) return;
+
+        state.nameProperty().removeListener(listeners.name());
+        state.isAcceptingProperty().removeListener(listeners.accepting());
+        state.transitionMap().removeListener(listeners.transitionChange());
+        state.transitionMap().removeListener(listeners.transitionRemove());
+        unindex(state, state.name());
+        record(ChangeType.STATE_REMOVED, state, null);
+    }
+
+    private void record(ChangeType type, State state, Character symbol)
+    {
+        if (journal.size() == JOURNAL_SIZE) journal.removeFirst();
+        journal.addLast(new Change(++revision, type, state, symbol));
+    }
+    /**
+     * @return a number increased by each change of the automaton, so that derived data can tell whether it is outdated
+     */
+    public long revision()
+    {
+        return revision;
+    }
+    /**
+     * List the changes made after a given revision, so that derived data can be updated instead of computed again
+     * Only the last JOURNAL_SIZE changes are kept
+     *
+     * @param revision a revision previously returned by revision()
+     * @return the changes following the revision, the oldest first, or null if some of them are not in the journal anymore
+     */
+    public List<Change> changesSince(long revision)
+    {
+        if (revision > this.revision) throw new IllegalArgumentException("Unknown revision " + revision);
+        if (revision < this.revision - journal.size()) return null;
+
+        List<Change> changes = new ArrayList<>((int) (this.revision - revision));
+        Iterator<Change> iterator = journal.descendingIterator();
+        for (long i = revision; i < this.revision; ++i) changes.add(iterator.next());
+        Collections.reverse(changes);
+        return changes;
+    }
+    private void index(State state, String name)
+    {
+        statesByName.computeIfAbsent(name, n -> new ArrayList<>(1)).add(state);
+    }
+    private void unindex(State state, String name)
+    {
+        List<State> list = statesByName.get(name);
+        if (list == null) return;
+
+        list.removeIf(s -> s == state);
+        if (list.isEmpty()) statesByName.remove(name);
+    }
+
     private void validateNameChange(State state, String oldName)
     {
-        if (states.stream().anyMatch(s -> s != state && s.name().equals(state.name())))
+        if (statesByName.get(state.name()).size() > 1)
             Platform.runLater(() -> state.nameProperty().set(oldName));
     }
 
@@ -184,14 +289,34 @@ public class FiniteAutomaton
      */
     public void clear()
     {
+        // States are removed first, so that resetting the initial state is not seen as an invalid change
+        states.clear();
         initialState.set(null);
         alphabet.clear();
-        states.clear();
+
+        if (mainPane == null) return;
         mainPane.getGraphPane().children().clear();
         mainPane.getGraphPane().edges().clear();
         mainPane.getGraphPane().selfEdges().clear();
     }
 
+    /**
+     * Copy the automaton into an immutable Automaton, which can then be read from any thread while this one is edited
+     * The copy is cached until the automaton changes, so that repeated computations do not read the properties again
+     * It must be called from the thread modifying the automaton, usually the FX thread
+     *
+     * @return the snapshot of the current content
+     */
+    public Automaton snapshot()
+    {
+        if (snapshot == null || snapshotRevision != revision)
+        {
+            snapshot = Automaton.fromFiniteAutomaton(this);
+            snapshotRevision = revision;
+        }
+        return snapshot;
+    }
+
     public MainPane getMainPane()
     {
         return mainPane;
@@ -208,7 +333,8 @@ public class FiniteAutomaton
      */
     public State getState(String name)
     {
-        return states.stream().filter(s -> s.name().equals(name)).findAny().orElse(null);
+        List<State> list = statesByName.get(name);
+        return list == null ? null : list.get(0);
     }
     /**
      * @param name name of the queried state
@@ -216,37 +342,195 @@ public class FiniteAutomaton
      */
     public boolean hasState(String name)
     {
-        return states.stream().anyMatch(s -> s.name().equals(name));
+        return statesByName.containsKey(name);
     }
 
     /**
-     * Load the automaton from a JSONObject
+     * Replace the content of the automaton by a DFA
      *
-     * @param object the object to load
+     * @param dfa the DFA to load
+     */
+    public void loadDFA(DFA dfa)
+    {
+        clear();
+
+        alphabet.addAll(dfa.alphabet());
+        for (int i = 0; i < dfa.stateCount(); ++i)
+            addState(dfa.stateName(i));
+
+        for (int i = 0; i < dfa.stateCount(); ++i)
+        {
+            State state = states.get(i);
+            state.isAcceptingProperty().set(dfa.isAccepting(i));
+
+            for (int j = 0; j < dfa.symbolCount(); ++j)
+            {
+                int target = dfa.next(i, j);
+                state.transitionMap().setValue(dfa.symbol(j), target == DFA.NO_STATE ? List.of() : new ArrayList<>(List.of(states.get(target))));
+            }
+        }
+
+        initialState.set(states.get(dfa.initialIndex()));
+    }
+
+    /**
+     * Replace the content of the automaton by an Automaton
+     * As when loading JSON, every symbol of the alphabet gets an entry in the transition maps, empty if it has no target
+     *
+     * @param automaton the automaton to load
+     */
+    public void load(Automaton automaton)
+    {
+        load(automaton, createStates(automaton, count -> {}));
+    }
+    /**
+     * Replace the content of the automaton by States created with createStates
+     * The States are added at once, so that the listeners of the states list are notified a single time
+     *
+     * @param automaton the automaton the States were created from
+     * @param created   the States, in the order of the automaton
+     */
+    public void load(Automaton automaton, List<State> created)
+    {
+        clear();
+
+        for (int j = 0; j < automaton.symbolCount(); ++j)
+            alphabet.add(automaton.symbol(j));
+        states.addAll(created);
+
+        initialState.set(automaton.initialIndex() == DFA.NO_STATE ? null : created.get(automaton.initialIndex()));
+    }
+    /**
+     * Create the States of an Automaton, with their transitions, without adding them to this automaton
+     * Nothing observed by the view is modified, so that this can run outside of the FX thread, the States are then
+     * added by load(Automaton, List)
+     *
+     * @param automaton the automaton to create the States of
+     * @param progress  called with the number of States completed so far
+     * @return the States, in the order of the automaton
+     */
+    public List<State> createStates(Automaton automaton, IntConsumer progress)
+    {
+        List<Character> symbols = new ArrayList<>(automaton.symbolCount());
+        for (int j = 0; j < automaton.symbolCount(); ++j)
+            symbols.add(automaton.symbol(j));
+
+        List<State> created = new ArrayList<>(automaton.stateCount());
+        for (int i = 0; i < automaton.stateCount(); ++i)
+        {
+            State state = new State(this, symbols);
+            state.nameProperty().set(automaton.stateName(i));
+            state.isAcceptingProperty().set(automaton.isAccepting(i));
+            created.add(state);
+        }
+
+        for (int i = 0; i < automaton.stateCount(); ++i)
+        {
+            State state = created.get(i);
+            for (int j = 0; j < automaton.symbolCount(); ++j)
+                state.transitionMap().setValue(automaton.symbol(j), targetList(created, automaton.targets(i, j)));
+            if (automaton.targetCount(i, automaton.symbolCount()) != 0)
+                state.transitionMap().setValue(State.EPSILON, targetList(created, automaton.epsilonTargets(i)));
+
+            if ((i & 0x3FF) == 0x3FF || i == automaton.stateCount() - 1) progress.accept(i + 1);
+        }
+        return created;
+    }
+    private static List<State> targetList(List<State> states, int[] targets)
+    {
+        List<State> list = new ArrayList<>(targets.length);
+        for (int target : targets) list.add(states.get(target));
+        return list;
+    }
+
+    /**
+     * Convert the JSON of an automaton, with the same checks as loadJSON
+     * Nothing is modified, so that this can run outside of the FX thread
+     *
+     * @param object the object to convert
+     * @return the automaton
      * @throws IOManager.CorruptedFileException when the object is invalid
      */
-    public void loadJSON(JSONObject object) throws IOManager.CorruptedFileException
+    public static Automaton toAutomaton(JSONObject object) throws IOManager.CorruptedFileException
     {
         object.checkHasArray(JSON_STATES);
         object.checkHasString(JSON_INITIAL);
         object.checkHasArray(JSON_ALPHABET);
 
-        var nodesArray = object.get(JSON_STATES).getAsJSONArray();
-
-        clear();
-
+        Automaton.Loader loader = new Automaton.Loader();
+        loader.startAlphabet();
         for (JSONElement e : object.getAsJSONArray(JSON_ALPHABET))
         {
-            if (!e.isJSONPrimitive() || !e.getAsJSONPrimitive().isString() || e.getAsJSONPrimitive().getAsString().length() != 1)
+            if (!e.isJSONPrimitive() || !e.getAsJSONPrimitive().isString())
                 throw new IOManager.CorruptedFileException("Could not convert \"%s\" to a character", e);
-            alphabet().add(e.getAsString().charAt(0));
+            loader.addSymbol(e.getAsString());
         }
+        loader.setInitial(object.get(JSON_INITIAL).getAsString());
+
+        loader.startStates();
+        for (JSONElement e : object.getAsJSONArray(JSON_STATES))
+        {
+            if (!e.isJSONObject()) throw new IOManager.CorruptedFileException("Could not parse \"%s\" into a state", e);
+            JSONObject state = e.getAsJSONObject();
+            state.checkHasString(State.JSON_NAME);
+            state.checkHasBoolean(State.JSON_IS_ACCEPTING);
+            state.checkHasObject(State.JSON_TRANSITION_MAP);
+
+            int id = loader.nextState();
+            JSONObject transitionMap = state.getAsJSONObject(State.JSON_TRANSITION_MAP);
+            for (Map.Entry<String, JSONElement> entry : transitionMap.entrySet())
+            {
+                String key = entry.getKey();
+                if (key.length() != 1 || !(entry.getValue().isJSONNull() || entry.getValue().isJSONArray()))
+                    throw new IOManager.CorruptedFileException("Could not parse \"%s\" into a transition map", transitionMap);
+
+                if (entry.getValue().isJSONArray())
+                    for (JSONElement target : entry.getValue().getAsJSONArray())
+                        loader.addTransition(id, key.charAt(0), target.getAsString());
+            }
+
+            loader.addState(state.get(State.JSON_NAME).getAsString(), state.get(State.JSON_IS_ACCEPTING).getAsBoolean());
+        }
+
+        return loader.create();
+    }
 
-        for (JSONElement jsonElement : nodesArray)
-            addState(State.fromJSONObject(jsonElement.getAsJSONObject(), this));
-        initialStateProperty().set(getState(object.get(JSON_INITIAL).getAsString()));
+    /**
+     * Load the automaton from a JSONObject
+     * The object is converted to an Automaton first, so that the States are created with their transitions and then
+     * added in a single change, as when opening a file
+     *
+     * @param object the object to load
+     * @throws IOManager.CorruptedFileException when the object is invalid
+     */
+    public void loadJSON(JSONObject object) throws IOManager.CorruptedFileException
+    {
+        load(toAutomaton(object));
+    }
 
-        for (JSONElement e : nodesArray)
-            getState(e.getAsJSONObject().get(State.JSON_NAME).getAsString()).loadTransitionMap(e.getAsJSONObject().get(State.JSON_TRANSITION_MAP).getAsJSONObject());
+    public enum ChangeType
+    {
+        STATE_ADDED,
+        STATE_REMOVED,
+        STATE_RENAMED,
+        ACCEPTING_CHANGED,
+        TRANSITION_SET,
+        ALPHABET_CHANGED,
+        INITIAL_CHANGED
     }
+
+    /**
+     * A change of the automaton, as recorded in the journal
+     *
+     * @param revision the revision of the automaton after the change
+     * @param type     the kind of change
+     * @param state    the State that changed, or the new initial State, null for a change of the alphabet
+     * @param symbol   the symbol of the transition or of the alphabet that changed, null otherwise
+     */
+    public record Change(long revision, ChangeType type, State state, Character symbol) {}
+
+    private record StateListeners(ChangeListener<String> name,
+                                  ChangeListener<Boolean> accepting,
+                                  PropertiesMap.PropertyChangeListener<Character, List<State>> transitionChange,
+                                  PropertiesMap.PropertyRemoveListener<Character, List<State>> transitionRemove) {}
 }
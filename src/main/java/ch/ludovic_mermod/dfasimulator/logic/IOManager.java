@@ -7,28 +7,59 @@ import ch.ludovic_mermod.dfasimulator.constants.settings.Settings;
 import ch.ludovic_mermod.dfasimulator.gui.MainPane;
 import ch.ludovic_mermod.dfasimulator.json.JSONElement;
 import ch.ludovic_mermod.dfasimulator.json.JSONObject;
-import com.google.gson.JsonParseException;
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
 import javafx.beans.property.*;
 import javafx.scene.control.Alert;
 import javafx.scene.control.ButtonType;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.layout.VBox;
+import javafx.util.Duration;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
 /**
  * Manages the open/save actions for the current automaton
+ * <p>
+ * Unsaved changes are also autosaved to a recovery file, in the binary format. Changes are coalesced so that there is at
+ * most one write per AUTOSAVE_INTERVAL: a snapshot of the automaton is taken on the FX thread, and written on a
+ * background thread, which also writes the settings and strings files.
  */
 public class IOManager
 {
+    private static final long NOT_SAVED         = -1;
+    private static final long AUTOSAVE_INTERVAL = 30;
+
+    private static final Duration OPEN_DIALOG_DELAY = Duration.millis(300);
+
+    private static final String RECOVERY_FILE          = "recovery" + BinaryFormat.EXTENSION;
+    private static final String PREVIOUS_RECOVERY_FILE = "recovery.previous" + BinaryFormat.EXTENSION;
+
     private final MainPane        mainPane;
     private final FiniteAutomaton finiteAutomaton;
 
     private final StringProperty filenameProperty, filepathProperty;
     private final BooleanProperty isSavedProperty;
 
-    private final JSONObject  currentFile;
-    private       JSONElement savedFile;
+    private final JSONObject currentFile;
+    private       long       savedRevision;
+
+    private final ScheduledExecutorService ioExecutor;
+    private       boolean                  isAutosaveScheduled;
+    private       long                     autosavedRevision;
+
+    private OpenTask openTask;
 
     /**
      * Constructs an IOManager for the given MainPane
@@ -43,10 +74,23 @@ public class IOManager
         filepathProperty.addListener((o, ov, nv) -> filenameProperty.set(nv == null ? "new" : new File(filepathProperty.get()).getName()));
         finiteAutomaton = mainPane.getFiniteAutomaton();
 
+        savedRevision = NOT_SAVED;
         currentFile = new JSONObject();
         currentFile.add("graph", mainPane.getGraphPane().getJSONObject());
         currentFile.add("automaton", mainPane.getFiniteAutomaton().getJSONObject());
-        currentFile.addListener((JSONElement.ChildUpdateListener) update -> updateSavedProperty());
+        currentFile.addListener((JSONElement.ChildUpdateListener) update ->
+        {
+            updateSavedProperty();
+            scheduleAutosave();
+        });
+
+        ioExecutor = Executors.newSingleThreadScheduledExecutor(r ->
+        {
+            Thread thread = new Thread(r, "io-manager");
+            thread.setDaemon(true);
+            return thread;
+        });
+        autosavedRevision = NOT_SAVED;
     }
 
     /**
@@ -54,9 +98,14 @@ public class IOManager
      */
     public void save()
     {
-        Settings.save(Resources.get("settings.properties"));
+        // Properties are thread-safe, only the settings need to be copied on the FX thread
+        Properties settings = Settings.toProperties();
+        ioExecutor.execute(() ->
+        {
+            Settings.store(settings, Resources.get("settings.properties"));
+            Strings.save();
+        });
 
-        Strings.save();
         if (filepathProperty.isEmpty().get() || filepathProperty.get().isEmpty())
         {
             String str = mainPane.getGraphPane().getMainPane().getSimulatorMenuBar().chooseSaveFile();
@@ -64,11 +113,27 @@ public class IOManager
             filepathProperty.set(str);
         }
 
-        currentFile.saveToFile(filepathProperty.get());
-        savedFile = currentFile.deepCopy();
+        String path = filepathProperty.get();
+        if (!(path.endsWith(BinaryFormat.EXTENSION) ? saveBinary(path) : currentFile.saveToFile(path))) return;
+        savedRevision = currentFile.revision();
+        ioExecutor.execute(this::deleteRecoveryFile);
 
         updateSavedProperty();
     }
+    private boolean saveBinary(String filename)
+    {
+        try
+        {
+            Automaton automaton = finiteAutomaton.snapshot();
+            BinaryFormat.write(Path.of(filename), automaton, mainPane.getGraphPane().getLayout(automaton));
+            return true;
+        }
+        catch (IOException e)
+        {
+            Main.logger.log(Level.SEVERE, "Could not save to " + filename, e);
+            return false;
+        }
+    }
     /**
      * Changes the current file and save the automaton to it
      *
@@ -80,34 +145,81 @@ public class IOManager
         save();
     }
     /**
-     * Open the given file
+     * Open the given file, in the JSON or in the binary format
+     * The file is read on a background thread, a progress dialog allowing to cancel it is shown if it takes some time. The
+     * current automaton is only replaced once the file is read, in a single batch
      *
      * @param filename the file to oepn
      */
     public void open(String filename)
     {
-        filepathProperty.set(filename);
         if (!close()) return;
+        if (openTask != null) openTask.cancel();
 
-        try
-        {
-            var readJSON = JSONElement.readFromFile(filename);
-            JSONObject object = readJSON.isJSONObject() ? readJSON.getAsJSONObject() : new JSONObject();
+        OpenTask task = new OpenTask(Path.of(filename), finiteAutomaton);
+        openTask = task;
 
-            object.checkHasObject("graph");
-            object.checkHasObject("automaton");
+        ProgressBar progressBar = new ProgressBar();
+        progressBar.setMaxWidth(Double.MAX_VALUE);
+        progressBar.progressProperty().bind(task.progressProperty());
+        Alert alert = new Alert(Alert.AlertType.NONE, null, ButtonType.CANCEL);
+        alert.getDialogPane().setContent(new VBox(10, new Label(Strings.format("alert.opening", new File(filename).getName())), progressBar));
+        alert.setOnHidden(event -> task.cancel());
 
-            finiteAutomaton.loadJSON(object.getAsJSONObject("automaton"));
-            mainPane.getGraphPane().loadJSON(object.getAsJSONObject("graph"));
+        // Small files are read before the dialog would be shown
+        PauseTransition dialogDelay = new PauseTransition(OPEN_DIALOG_DELAY);
+        dialogDelay.setOnFinished(event ->
+        {
+            if (task.isRunning()) alert.show();
+        });
 
-            savedFile = currentFile.deepCopy();
-        }
-        catch (CorruptedFileException | JsonParseException e)
+        task.setOnSucceeded(event ->
         {
-            Main.logger.log(Level.SEVERE, "While reading " + filename, e);
-            finiteAutomaton.clear();
-        }
+            endOpen(task, dialogDelay, alert);
+            OpenTask.Result result = task.getValue();
+            try
+            {
+                finiteAutomaton.load(result.automaton(), result.states());
+                if (result.layout() != null) mainPane.getGraphPane().loadLayout(result.layout(), result.automaton());
+                else if (result.graph() != null) mainPane.getGraphPane().loadJSON(result.graph());
 
+                filepathProperty.set(filename);
+                savedRevision = currentFile.revision();
+                ioExecutor.execute(this::deleteRecoveryFile);
+                updateSavedProperty();
+            }
+            catch (CorruptedFileException e)
+            {
+                openFailed(filename, e);
+            }
+        });
+        task.setOnFailed(event ->
+        {
+            endOpen(task, dialogDelay, alert);
+            openFailed(filename, task.getException());
+        });
+        task.setOnCancelled(event ->
+        {
+            endOpen(task, dialogDelay, alert);
+            Main.log(Level.INFO, "Cancelled the opening of %s", filename);
+        });
+
+        dialogDelay.play();
+        Thread thread = new Thread(task, "io-manager-open");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    private void endOpen(OpenTask task, PauseTransition dialogDelay, Alert alert)
+    {
+        if (openTask == task) openTask = null;
+        dialogDelay.stop();
+        alert.close();
+    }
+    private void openFailed(String filename, Throwable e)
+    {
+        Main.logger.log(Level.SEVERE, "While reading " + filename, e);
+        filepathProperty.set(filename);
+        finiteAutomaton.clear();
         updateSavedProperty();
     }
     /**
@@ -117,19 +229,111 @@ public class IOManager
     {
         finiteAutomaton.clear();
         filepathProperty.set(null);
-        savedFile = currentFile.deepCopy();
+        savedRevision = currentFile.revision();
+        ioExecutor.execute(this::deleteRecoveryFile);
 
         updateSavedProperty();
     }
 
+    /**
+     * Move away the recovery file left by a previous session, so that it is not overwritten by the next autosave
+     *
+     * @return the moved file, or null if the previous session did not leave one
+     */
+    public Path keepPreviousRecoveryFile()
+    {
+        Path recovery = Path.of(Resources.get(RECOVERY_FILE)), previous = Path.of(Resources.get(PREVIOUS_RECOVERY_FILE));
+        if (!Files.exists(recovery)) return null;
+
+        try
+        {
+            return Files.move(recovery, previous, StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch (IOException e)
+        {
+            Main.logger.log(Level.WARNING, "Could not move the recovery file " + recovery, e);
+            return null;
+        }
+    }
+    /**
+     * Wait for the pending writes and stop the background thread
+     * The recovery file is deleted, as the user either saved or discarded the changes
+     */
+    public void shutdown()
+    {
+        if (openTask != null) openTask.cancel();
+        ioExecutor.execute(this::deleteRecoveryFile);
+        ioExecutor.shutdown();
+        try
+        {
+            if (!ioExecutor.awaitTermination(10, TimeUnit.SECONDS))
+                Main.log(Level.WARNING, "Pending writes did not complete");
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Schedule an autosave if there is none pending, the changes happening in the meantime are saved by the same write
+     */
+    private void scheduleAutosave()
+    {
+        if (isAutosaveScheduled || isSaved() || ioExecutor.isShutdown()) return;
+
+        isAutosaveScheduled = true;
+        ioExecutor.schedule(() -> Platform.runLater(this::autosave), AUTOSAVE_INTERVAL, TimeUnit.SECONDS);
+    }
+    private void autosave()
+    {
+        isAutosaveScheduled = false;
+        if (isSaved() || autosavedRevision == currentFile.revision() || ioExecutor.isShutdown()) return;
+
+        // The snapshot is made of plain arrays, the FX thread can keep modifying the automaton while it is written
+        Automaton automaton = finiteAutomaton.snapshot();
+        BinaryFormat.Layout layout = mainPane.getGraphPane().getLayout(automaton);
+        autosavedRevision = currentFile.revision();
+
+        Path recovery = Path.of(Resources.get(RECOVERY_FILE));
+        ioExecutor.execute(() ->
+        {
+            try
+            {
+                BinaryFormat.write(recovery, automaton, layout);
+            }
+            catch (IOException e)
+            {
+                Main.logger.log(Level.WARNING, "Could not autosave to " + recovery, e);
+            }
+        });
+    }
+    private void deleteRecoveryFile()
+    {
+        try
+        {
+            Files.deleteIfExists(Path.of(Resources.get(RECOVERY_FILE)));
+        }
+        catch (IOException e)
+        {
+            Main.logger.log(Level.WARNING, "Could not delete the recovery file", e);
+        }
+    }
+
     private void updateSavedProperty()
     {
         isSavedProperty.set(isSaved());
     }
 
+    /**
+     * The document is compared by revision, so that this does not depend on its size
+     * Changing it and changing it back still marks it as modified
+     *
+     * @return whether the automaton did not change since it was last opened or saved
+     */
     public boolean isSaved()
     {
-        return savedFile == null || savedFile.toString().equals(currentFile.toString());
+        return savedRevision == NOT_SAVED || savedRevision == currentFile.revision();
     }
     public ReadOnlyBooleanProperty isSavedProperty()
     {
@@ -0,0 +1,101 @@
+package ch.ludovic_mermod.dfasimulator.logic;
+
+import java.util.List;
+
+/**
+ * Enumerate inputs by counting over an alphabet
+ * <p>
+ * The input at a given index is the index written in base {@code digits.size()}, padded to a fixed length.
+ * When the first digit is the discarded character, leading occurrences of it are removed (as leading zeros would be),
+ * and an input left empty is replaced by the discarded character.
+ * With a single character, the input at index i is that character repeated i times.
+ * As any input can be computed from its index, ranges of inputs can be generated independently.
+ */
+public class InputGenerator
+{
+    private final char[] digits;
+    private final char   discarded;
+    private final int    length;
+
+    /**
+     * Constructs an InputGenerator
+     *
+     * @param digits    the characters to count with, from the lowest to the highest
+     * @param discarded the discarded character
+     * @param count     the number of inputs to generate, used to compute the length of the inputs
+     */
+    public InputGenerator(List<Character> digits, char discarded, long count)
+    {
+        if (digits.isEmpty()) throw new IllegalArgumentException("Cannot generate inputs over an empty alphabet");
+
+        this.digits = new char[digits.size()];
+        for (int i = 0; i < this.digits.length; ++i) this.digits[i] = digits.get(i);
+        this.discarded = discarded;
+
+        int length = 0;
+        if (this.digits.length == 1)
+            length = (int) Math.max(0, count - 1);
+        else
+            for (long capacity = 1; capacity < count; capacity *= this.digits.length) ++length;
+        this.length = length;
+    }
+
+    /**
+     * Creates an InputGenerator producing the binary representation of the indices
+     */
+    public static InputGenerator binary(long count)
+    {
+        return new InputGenerator(List.of('0', '1'), '0', count);
+    }
+
+    /**
+     * Write the input at the given index into a StringBuilder (its previous content is discarded)
+     *
+     * @param index   index of the input
+     * @param builder builder receiving the input
+     */
+    public void generate(long index, StringBuilder builder)
+    {
+        if (digits.length == 1)
+        {
+            builder.setLength(0);
+            for (long i = 0; i < index; ++i) builder.append(digits[0]);
+            return;
+        }
+
+        builder.setLength(length);
+        for (int i = length - 1; i >= 0; --i)
+        {
+            builder.setCharAt(i, digits[(int) (index % digits.length)]);
+            index /= digits.length;
+        }
+
+        if (digits[0] == discarded)
+        {
+            int start = 0;
+            while (start < builder.length() && builder.charAt(start) == discarded) ++start;
+            builder.delete(0, start);
+        }
+
+        if (builder.isEmpty()) builder.append(discarded);
+    }
+
+    /**
+     * @param index index of the input
+     * @return the input at the given index
+     */
+    public String get(long index)
+    {
+        StringBuilder builder = new StringBuilder(length);
+        generate(index, builder);
+        return builder.toString();
+    }
+
+    /**
+     * @return the number of characters of a generated input, before leading discarded characters are removed
+     */
+    public int length()
+    {
+        return length;
+    }
+}
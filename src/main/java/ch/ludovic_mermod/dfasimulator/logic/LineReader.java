@@ -0,0 +1,85 @@
+package ch.ludovic_mermod.dfasimulator.logic;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Read the lines of a Reader, with the same rule as the byte mode of DFAScanner
+ * <p>
+ * Lines are separated by {@code \n} only, a {@code \r} right before it (or at the end of the input) is not part of the line.
+ * Unlike BufferedReader.readLine, a lone {@code \r} does not end a line. The last line, when not terminated, is only
+ * read if it contains at least one character (before removing the {@code \r}).
+ * This class does not depend on JavaFX.
+ */
+public class LineReader implements Closeable
+{
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Reader        reader;
+    private final char[]        buffer;
+    private final StringBuilder line;
+    private       int           position, limit;
+
+    /**
+     * Constructs a LineReader
+     *
+     * @param reader the Reader to read the lines from, closed with this LineReader
+     */
+    public LineReader(Reader reader)
+    {
+        this.reader = reader;
+        buffer = new char[BUFFER_SIZE];
+        line = new StringBuilder();
+    }
+
+    /**
+     * Read the next line
+     *
+     * @return the next line, without its terminator, or null at the end of the input
+     * @throws IOException if the Reader throws one
+     */
+    public String readLine() throws IOException
+    {
+        line.setLength(0);
+        boolean started = false;
+
+        while (true)
+        {
+            if (position == limit)
+            {
+                limit = reader.read(buffer, 0, buffer.length);
+                position = 0;
+                if (limit == -1)
+                {
+                    limit = 0;
+                    return started ? stripCR() : null;
+                }
+            }
+
+            int start = position;
+            while (position < limit && buffer[position] != '\n') ++position;
+            line.append(buffer, start, position - start);
+            started |= position > start;
+
+            if (position < limit)
+            {
+                ++position;
+                return stripCR();
+            }
+        }
+    }
+
+    private String stripCR()
+    {
+        int length = line.length();
+        if (length > 0 && line.charAt(length - 1) == '\r') line.setLength(length - 1);
+        return line.toString();
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        reader.close();
+    }
+}
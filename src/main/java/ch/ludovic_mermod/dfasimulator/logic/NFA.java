@@ -0,0 +1,405 @@
+package ch.ludovic_mermod.dfasimulator.logic;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.util.*;
+import java.util.function.IntConsumer;
+
+/**
+ * Compiled, immutable nondeterministic finite automaton
+ * <p>
+ * States are stored as dense ids and a set of active states as a {@code long[]} bitset of {@link #wordCount()} words.
+ * The successors of each (state, symbol) pair are stored contiguously in a single array, indexed by
+ * {@code offsets[state * symbolCount + symbol]}, so that a step only touches the active states and their outputs,
+ * and does not allocate anything.
+ * <p>
+ * The ε-closure of each state is computed once, when the NFA is compiled, and stored the same way.
+ * Reaching a state during a step adds its whole closure, so that no graph search is done while simulating.
+ */
+public class NFA
+{
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final String[] stateNames;
+    private final char[]   symbols;
+    private final int[]    symbolIndices;
+    private final int[]    offsets;
+    private final int[]    targets;
+    private final int[]    closureOffsets;
+    private final int[]    closures;
+    private final long[]   accepting;
+    private final int      initialIndex;
+
+    /**
+     * Constructs an NFA directly from its compiled tables, the arrays are used and not copied
+     * closureOffsets and closures may be null when the NFA has no ε-transition
+     */
+    NFA(String[] stateNames, char[] symbols, int[] offsets, int[] targets, int[] closureOffsets, int[] closures, long[] accepting, int initialIndex)
+    {
+        this.stateNames = stateNames;
+        this.symbols = symbols;
+        this.symbolIndices = new int[symbols.length == 0 ? 0 : max(symbols) + 1];
+        this.offsets = offsets;
+        this.targets = targets;
+        this.closureOffsets = closureOffsets;
+        this.closures = closures;
+        this.accepting = accepting;
+        this.initialIndex = initialIndex;
+
+        Arrays.fill(symbolIndices, DFA.NO_STATE);
+        for (int i = 0; i < symbols.length; ++i) symbolIndices[symbols[i]] = i;
+    }
+
+    /**
+     * Compile the current state of a FiniteAutomaton, through its snapshot
+     * It must be called from the thread modifying the automaton, as {@link FiniteAutomaton#snapshot()}
+     * The id of a state is its index in {@link FiniteAutomaton#states()}
+     *
+     * @param finiteAutomaton the automaton to compile
+     * @return the compiled NFA
+     * @throws IllegalStateException if the automaton has no initial state
+     */
+    public static NFA fromFiniteAutomaton(FiniteAutomaton finiteAutomaton)
+    {
+        return fromAutomaton(finiteAutomaton.snapshot());
+    }
+    /**
+     * Compile an Automaton
+     * The ids of the states are the same in both
+     *
+     * @param automaton the automaton to compile
+     * @return the compiled NFA
+     * @throws IllegalStateException if the automaton has no initial state
+     */
+    public static NFA fromAutomaton(Automaton automaton)
+    {
+        if (automaton.initialIndex() == DFA.NO_STATE) throw new IllegalStateException("The automaton has no initial state");
+
+        final int stateCount = automaton.stateCount(), symbolCount = automaton.symbolCount();
+        String[] names = new String[stateCount];
+        char[] symbols = new char[symbolCount];
+        long[] accepting = new long[DFA.wordCount(stateCount)];
+        for (int i = 0; i < symbolCount; ++i) symbols[i] = automaton.symbol(i);
+
+        int[] offsets = new int[stateCount * symbolCount + 1];
+        int[] targets = new int[16];
+        int targetCount = 0;
+
+        int[][] epsilonTargets = new int[stateCount][];
+        boolean hasEpsilon = false;
+
+        for (int i = 0; i < stateCount; ++i)
+        {
+            names[i] = automaton.stateName(i);
+            if (automaton.isAccepting(i)) DFA.setBit(accepting, i);
+
+            for (int j = 0; j < symbolCount; ++j)
+            {
+                offsets[i * symbolCount + j] = targetCount;
+
+                int[] list = automaton.targets(i, j);
+                if (targetCount + list.length > targets.length) targets = Arrays.copyOf(targets, Math.max(targets.length * 2, targetCount + list.length));
+                System.arraycopy(list, 0, targets, targetCount, list.length);
+                targetCount += list.length;
+            }
+
+            epsilonTargets[i] = automaton.epsilonTargets(i);
+            hasEpsilon |= epsilonTargets[i].length != 0;
+        }
+        offsets[offsets.length - 1] = targetCount;
+
+        int[] closureOffsets = null, closures = null;
+        if (hasEpsilon)
+        {
+            closureOffsets = new int[stateCount + 1];
+            closures = computeClosures(epsilonTargets, closureOffsets);
+        }
+
+        return new NFA(names, symbols, offsets, Arrays.copyOf(targets, targetCount), closureOffsets, closures, accepting, automaton.initialIndex());
+    }
+
+    /**
+     * Compute the ε-closure of each state with a depth-first search
+     *
+     * @param epsilonTargets for each state, the targets of its ε-transitions
+     * @param offsets        receives the start of the closure of each state in the returned array
+     * @return the closures of all states, each one starting with the state itself
+     */
+    private static int[] computeClosures(int[][] epsilonTargets, int[] offsets)
+    {
+        int stateCount = epsilonTargets.length;
+        long[] visited = new long[DFA.wordCount(stateCount)];
+        int[] stack = new int[stateCount];
+        int[] closures = new int[stateCount * 2];
+        int size = 0;
+
+        for (int i = 0; i < stateCount; ++i)
+        {
+            offsets[i] = size;
+            int start = size, top = 0;
+            stack[top++] = i;
+            DFA.setBit(visited, i);
+
+            while (top > 0)
+            {
+                int state = stack[--top];
+                if (size == closures.length) closures = Arrays.copyOf(closures, closures.length * 2);
+                closures[size++] = state;
+
+                for (int target : epsilonTargets[state])
+                    if (!DFA.getBit(visited, target))
+                    {
+                        DFA.setBit(visited, target);
+                        stack[top++] = target;
+                    }
+            }
+
+            for (int k = start; k < size; ++k) visited[closures[k] >>> 6] = 0;
+        }
+        offsets[stateCount] = size;
+
+        return Arrays.copyOf(closures, size);
+    }
+
+    /**
+     * Apply an action to each state of a set, by increasing id
+     *
+     * @param set    a state set
+     * @param action the action to apply to the id of each state
+     */
+    public static void forEach(long[] set, IntConsumer action)
+    {
+        for (int w = 0; w < set.length; ++w)
+            for (long word = set[w]; word != 0; word &= word - 1)
+                action.accept((w << 6) + Long.numberOfTrailingZeros(word));
+    }
+
+    private static int max(char[] chars)
+    {
+        int max = 0;
+        for (char c : chars) max = Math.max(max, c);
+        return max;
+    }
+
+    /**
+     * @return the number of words of a state set
+     */
+    public int wordCount()
+    {
+        return DFA.wordCount(stateNames.length);
+    }
+    /**
+     * @return a new empty state set
+     */
+    public long[] newStateSet()
+    {
+        return new long[wordCount()];
+    }
+    /**
+     * Reset a state set to contain only the initial state
+     *
+     * @param set the set to reset
+     */
+    public void initial(long[] set)
+    {
+        Arrays.fill(set, 0);
+        addClosure(set, initialIndex);
+    }
+
+    private void addClosure(long[] set, int state)
+    {
+        if (closures == null)
+        {
+            set[state >>> 6] |= 1L << state;
+            return;
+        }
+
+        for (int k = closureOffsets[state], end = closureOffsets[state + 1]; k < end; ++k)
+            set[closures[k] >>> 6] |= 1L << closures[k];
+    }
+
+    /**
+     * Compute the states reached from a set of states by reading a character, including their ε-closures
+     *
+     * @param current the active states
+     * @param c       the character read
+     * @param next    the set receiving the reached states, its previous content is discarded (must not be current)
+     * @return whether any state was reached
+     */
+    public boolean step(long[] current, char c, long[] next)
+    {
+        Arrays.fill(next, 0);
+
+        int symbol = symbolIndex(c);
+        if (symbol == DFA.NO_STATE) return false;
+
+        final int[] offsets = this.offsets, targets = this.targets;
+        final int symbolCount = symbols.length;
+        boolean reached = false;
+
+        for (int w = 0; w < current.length; ++w)
+            for (long word = current[w]; word != 0; word &= word - 1)
+            {
+                int index = ((w << 6) + Long.numberOfTrailingZeros(word)) * symbolCount + symbol;
+                for (int k = offsets[index], end = offsets[index + 1]; k < end; ++k)
+                {
+                    // A state already in next has its closure in it, as closures are transitive
+                    if ((next[targets[k] >>> 6] & 1L << targets[k]) == 0) addClosure(next, targets[k]);
+                    reached = true;
+                }
+            }
+
+        return reached;
+    }
+
+    /**
+     * Read a sequence of characters, starting from a set of states
+     *
+     * @param current the active states, receives the reached states
+     * @param input   the characters to read
+     * @param buffer  a state set used as scratch space (must not be current)
+     */
+    public void run(long[] current, CharSequence input, long[] buffer)
+    {
+        long[] from = current, to = buffer;
+        for (int i = 0, length = input.length(); i < length; ++i)
+        {
+            boolean reached = step(from, input.charAt(i), to);
+            long[] tmp = from;
+            from = to;
+            to = tmp;
+
+            if (!reached) break;
+        }
+
+        if (from != current) System.arraycopy(from, 0, current, 0, current.length);
+    }
+
+    /**
+     * Test whether an input is accepted
+     *
+     * @param input the input to test
+     * @return whether the input is accepted
+     */
+    public boolean isAccepted(CharSequence input)
+    {
+        long[] set = newStateSet();
+        initial(set);
+        run(set, input, newStateSet());
+        return containsAccepting(set);
+    }
+
+    /**
+     * Test whether the content of a Reader is accepted, reading it in chunks
+     * Reading stops as soon as no state is active anymore, the reader is not closed
+     *
+     * @param reader the input to test
+     * @return whether the input is accepted
+     * @throws IOException if the reader throws one
+     */
+    public boolean isAccepted(Reader reader) throws IOException
+    {
+        char[] chars = new char[BUFFER_SIZE];
+        long[] set = newStateSet(), buffer = newStateSet();
+        initial(set);
+
+        for (int read; (read = reader.read(chars)) != -1; )
+        {
+            run(set, CharBuffer.wrap(chars, 0, read), buffer);
+            if (isEmpty(set)) return false;
+        }
+
+        return containsAccepting(set);
+    }
+
+    private static boolean isEmpty(long[] set)
+    {
+        for (long word : set)
+            if (word != 0) return false;
+        return true;
+    }
+
+    /**
+     * @param set a state set
+     * @return whether the set contains an accepting state
+     */
+    public boolean containsAccepting(long[] set)
+    {
+        for (int i = 0; i < set.length; ++i)
+            if ((set[i] & accepting[i]) != 0) return true;
+        return false;
+    }
+
+    /**
+     * @return the number of states
+     */
+    public int stateCount()
+    {
+        return stateNames.length;
+    }
+    /**
+     * @return the number of symbols in the alphabet
+     */
+    public int symbolCount()
+    {
+        return symbols.length;
+    }
+    /**
+     * @return the id of the initial state
+     */
+    public int initialIndex()
+    {
+        return initialIndex;
+    }
+    /**
+     * @param c a character
+     * @return the index of c in the alphabet, or NO_STATE if it is not part of it
+     */
+    public int symbolIndex(char c)
+    {
+        return c < symbolIndices.length ? symbolIndices[c] : DFA.NO_STATE;
+    }
+    /**
+     * @param index index of a symbol
+     * @return the symbol at the given index
+     */
+    public char symbol(int index)
+    {
+        return symbols[index];
+    }
+    /**
+     * @param state id of a state
+     * @return whether the state is accepting
+     */
+    public boolean isAccepting(int state)
+    {
+        return DFA.getBit(accepting, state);
+    }
+    /**
+     * @param state id of a state
+     * @return the name of the state
+     */
+    public String stateName(int state)
+    {
+        return stateNames[state];
+    }
+    /**
+     * @param state  id of the source state
+     * @param symbol index of the symbol
+     * @return the ids of the targets of the transition, without their ε-closures
+     */
+    public int[] successors(int state, int symbol)
+    {
+        int index = state * symbols.length + symbol;
+        return Arrays.copyOfRange(targets, offsets[index], offsets[index + 1]);
+    }
+    /**
+     * @param state id of a state
+     * @return the ids of the states in the ε-closure of the state, starting with the state itself
+     */
+    public int[] closure(int state)
+    {
+        return closures == null ? new int[]{state} : Arrays.copyOfRange(closures, closureOffsets[state], closureOffsets[state + 1]);
+    }
+}
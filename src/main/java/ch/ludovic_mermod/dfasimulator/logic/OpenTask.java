@@ -0,0 +1,133 @@
+package ch.ludovic_mermod.dfasimulator.logic;
+
+import ch.ludovic_mermod.dfasimulator.json.JSONElement;
+import ch.ludovic_mermod.dfasimulator.json.JSONObject;
+import ch.ludovic_mermod.dfasimulator.json.JSONReader;
+import javafx.concurrent.Task;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Read a file and create the States of its automaton outside of the FX thread
+ * <p>
+ * Reading the file makes the first half of the progress, creating the States the second one. The States are not added
+ * to the automaton, this is left to the FX thread once the task succeeded, with FiniteAutomaton.load(Automaton, List).
+ * State is qualified, as Worker.State shadows it in subclasses of Task.
+ */
+public class OpenTask extends Task<OpenTask.Result>
+{
+    private static final int READ_WORK = 1000, TOTAL_WORK = 2 * READ_WORK;
+
+    private final Path            path;
+    private final FiniteAutomaton finiteAutomaton;
+
+    /**
+     * Constructs an OpenTask
+     *
+     * @param path            the file to open, in the JSON or in the binary format
+     * @param finiteAutomaton the automaton the States are created for
+     */
+    public OpenTask(Path path, FiniteAutomaton finiteAutomaton)
+    {
+        this.path = path;
+        this.finiteAutomaton = finiteAutomaton;
+    }
+
+    @Override
+    protected Result call() throws Exception
+    {
+        Automaton automaton;
+        BinaryFormat.Layout layout = null;
+        JSONObject graph = null;
+
+        // The format is detected from the content of the file, whatever its extension
+        if (BinaryFormat.isBinary(path))
+        {
+            BinaryFormat.Content content = BinaryFormat.read(path);
+            automaton = content.automaton();
+            layout = content.layout();
+        }
+        else
+        {
+            JSONElement readJSON = readJSON();
+            JSONObject object = readJSON.isJSONObject() ? readJSON.getAsJSONObject() : new JSONObject();
+
+            object.checkHasObject("graph");
+            object.checkHasObject("automaton");
+
+            automaton = FiniteAutomaton.toAutomaton(object.getAsJSONObject("automaton"));
+            graph = object.getAsJSONObject("graph");
+        }
+        updateProgress(READ_WORK, TOTAL_WORK);
+
+        final int stateCount = Math.max(1, automaton.stateCount());
+        List<ch.ludovic_mermod.dfasimulator.logic.State> states = finiteAutomaton.createStates(automaton, count ->
+        {
+            checkCancelled();
+            updateProgress(READ_WORK + (long) READ_WORK * count / stateCount, TOTAL_WORK);
+        });
+
+        return new Result(automaton, states, layout, graph);
+    }
+
+    /**
+     * Parse the file, the progress follows the bytes read
+     */
+    private JSONElement readJSON() throws IOException
+    {
+        final long size = Math.max(1, Files.size(path));
+        InputStream in = new FilterInputStream(Files.newInputStream(path))
+        {
+            private long read;
+
+            @Override
+            public int read() throws IOException
+            {
+                int b = super.read();
+                if (b != -1) count(1);
+                return b;
+            }
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException
+            {
+                int n = super.read(b, off, len);
+                if (n > 0) count(n);
+                return n;
+            }
+            private void count(int n)
+            {
+                checkCancelled();
+                read += n;
+                updateProgress(Math.min(read, size) * READ_WORK / size, TOTAL_WORK);
+            }
+        };
+
+        try (JSONReader reader = new JSONReader(new InputStreamReader(in, StandardCharsets.UTF_8)))
+        {
+            return reader.read();
+        }
+    }
+
+    private void checkCancelled()
+    {
+        if (isCancelled()) throw new CancellationException();
+    }
+
+    /**
+     * Content of the opened file, the graph is given as JSON for the JSON format, and as a Layout for the binary one
+     *
+     * @param automaton the automaton of the file
+     * @param states    the States created for the automaton, in its order
+     * @param layout    the layout of the graph, or null
+     * @param graph     the JSON of the graph, or null
+     */
+    public record Result(Automaton automaton, List<ch.ludovic_mermod.dfasimulator.logic.State> states, BinaryFormat.Layout layout, JSONObject graph) {}
+}
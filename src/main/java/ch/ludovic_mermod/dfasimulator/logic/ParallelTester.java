@@ -0,0 +1,132 @@
+package ch.ludovic_mermod.dfasimulator.logic;
+
+import java.util.BitSet;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test a range of generated inputs against a DFA on a ForkJoinPool
+ * <p>
+ * The range [0, count) is split into sub-ranges aligned on 64 inputs, so that each worker generates its own inputs
+ * and writes its results into its own words of the result bitset.
+ * This class does not depend on JavaFX, the progress can be polled from any thread.
+ */
+public class ParallelTester
+{
+    private static final int THRESHOLD    = 1 << 12;
+    private static final int CANCEL_CHECK = 1 << 10;
+
+    private final DFA            dfa;
+    private final InputGenerator generator;
+    private final int            count;
+
+    private final long[]        words;
+    private final AtomicInteger tested;
+    private volatile boolean    cancelled;
+
+    /**
+     * Constructs a ParallelTester
+     *
+     * @param dfa       the DFA to test the inputs against
+     * @param generator the generator of the inputs
+     * @param count     the number of inputs to test
+     */
+    public ParallelTester(DFA dfa, InputGenerator generator, int count)
+    {
+        this.dfa = dfa;
+        this.generator = generator;
+        this.count = count;
+
+        words = new long[DFA.wordCount(count)];
+        tested = new AtomicInteger();
+    }
+
+    /**
+     * Test all inputs, blocking until they are all tested
+     *
+     * @param pool the pool to run the test on
+     * @return a BitSet where the bit i is set if the i-th input is accepted
+     * @throws CancellationException if the test was cancelled
+     */
+    public BitSet run(ForkJoinPool pool)
+    {
+        pool.invoke(new RangeTask(0, count));
+        if (cancelled) throw new CancellationException();
+        return BitSet.valueOf(words);
+    }
+
+    /**
+     * Stop the test as soon as possible
+     */
+    public void cancel()
+    {
+        cancelled = true;
+    }
+    public boolean isCancelled()
+    {
+        return cancelled;
+    }
+
+    /**
+     * @return the number of inputs already tested
+     */
+    public int testedCount()
+    {
+        return tested.get();
+    }
+    /**
+     * @return the total number of inputs to test
+     */
+    public int count()
+    {
+        return count;
+    }
+
+    private class RangeTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int from, to;
+
+        private RangeTask(int from, int to)
+        {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (cancelled) return;
+
+            if (to - from <= THRESHOLD)
+            {
+                testRange();
+                return;
+            }
+
+            int middle = from + ((to - from) / 2 & ~63);
+            invokeAll(new RangeTask(from, middle), new RangeTask(middle, to));
+        }
+
+        private void testRange()
+        {
+            StringBuilder input = new StringBuilder(generator.length());
+
+            for (int i = from; i < to; ++i)
+            {
+                generator.generate(i, input);
+                if (dfa.isAccepted(input)) words[i >>> 6] |= 1L << i;
+
+                if ((i - from + 1) % CANCEL_CHECK == 0)
+                {
+                    tested.addAndGet(CANCEL_CHECK);
+                    if (cancelled) return;
+                }
+            }
+            tested.addAndGet((to - from) % CANCEL_CHECK);
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package ch.ludovic_mermod.dfasimulator.logic;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Minimize a DFA with Hopcroft's partition refinement, in O(n log n) per symbol
+ * <p>
+ * Unreachable states are dropped first. A missing transition goes to a virtual sink state, so that states that can never
+ * reach an accepting state end up in the block of the sink, and are removed from the result (unless the initial state is one of them).
+ * When the DFA is complete, there is no sink: its dead states are merged into a single one, which is kept.
+ * The blocks are stored as contiguous ranges of a single array of states, a block being split by moving its marked
+ * states to its start.
+ */
+class PartitionRefinement
+{
+    private final DFA dfa;
+
+    private int   stateCount;
+    private int[] originalIds, reachableIds;
+    private int   sink;
+
+    private int[] elements, location, blockOf, blockStart, blockEnd, marked;
+    private int   blockCount;
+
+    private int[]     worklist;
+    private int       worklistSize;
+    private boolean[] inWorklist;
+
+    PartitionRefinement(DFA dfa)
+    {
+        this.dfa = dfa;
+    }
+
+    DFA.Minimization run()
+    {
+        final int symbolCount = dfa.symbolCount();
+        int[] transitions = reachableTransitions();
+        int[][] predecessorOffsets = new int[symbolCount][], predecessors = new int[symbolCount][];
+        for (int symbol = 0; symbol < symbolCount; ++symbol)
+            invert(transitions, symbol, predecessorOffsets, predecessors);
+
+        initPartition();
+
+        int[] splitter = new int[stateCount];
+        int[] touched = new int[stateCount];
+        while (worklistSize > 0)
+        {
+            int entry = worklist[--worklistSize];
+            int block = entry / symbolCount, symbol = entry % symbolCount;
+            inWorklist[entry] = false;
+
+            // The block may be reordered while marking, so its states are copied first
+            int size = blockEnd[block] - blockStart[block];
+            System.arraycopy(elements, blockStart[block], splitter, 0, size);
+
+            int touchedCount = 0;
+            for (int i = 0; i < size; ++i)
+            {
+                int[] offsets = predecessorOffsets[symbol];
+                for (int k = offsets[splitter[i]]; k < offsets[splitter[i] + 1]; ++k)
+                {
+                    int state = predecessors[symbol][k], target = blockOf[state];
+                    if (location[state] < blockStart[target] + marked[target]) continue;
+
+                    if (marked[target] == 0) touched[touchedCount++] = target;
+                    swap(location[state], blockStart[target] + marked[target]++);
+                }
+            }
+
+            for (int i = 0; i < touchedCount; ++i)
+                split(touched[i], symbolCount);
+        }
+
+        return createResult(transitions);
+    }
+
+    /**
+     * Renumber the states reachable from the initial state, and complete their transitions with a sink if needed
+     *
+     * @return the transition table over the new ids
+     */
+    private int[] reachableTransitions()
+    {
+        final int symbolCount = dfa.symbolCount();
+        int[] newIds = reachableIds = new int[dfa.stateCount()];
+        Arrays.fill(newIds, DFA.NO_STATE);
+        originalIds = new int[dfa.stateCount()];
+
+        newIds[dfa.initialIndex()] = 0;
+        originalIds[0] = dfa.initialIndex();
+        stateCount = 1;
+        boolean partial = false;
+
+        for (int i = 0; i < stateCount; ++i)
+            for (int symbol = 0; symbol < symbolCount; ++symbol)
+            {
+                int target = dfa.next(originalIds[i], symbol);
+                if (target == DFA.NO_STATE) partial = true;
+                else if (newIds[target] == DFA.NO_STATE)
+                {
+                    newIds[target] = stateCount;
+                    originalIds[stateCount++] = target;
+                }
+            }
+
+        sink = partial ? stateCount++ : DFA.NO_STATE;
+        int[] transitions = new int[stateCount * symbolCount];
+        for (int i = 0; i < stateCount; ++i)
+            for (int symbol = 0; symbol < symbolCount; ++symbol)
+            {
+                int target = i == sink ? DFA.NO_STATE : dfa.next(originalIds[i], symbol);
+                transitions[i * symbolCount + symbol] = target == DFA.NO_STATE ? sink : newIds[target];
+            }
+
+        return transitions;
+    }
+
+    private void invert(int[] transitions, int symbol, int[][] offsetsBySymbol, int[][] predecessorsBySymbol)
+    {
+        final int symbolCount = dfa.symbolCount();
+        int[] offsets = new int[stateCount + 1];
+        for (int i = 0; i < stateCount; ++i) ++offsets[transitions[i * symbolCount + symbol] + 1];
+        for (int i = 0; i < stateCount; ++i) offsets[i + 1] += offsets[i];
+
+        int[] predecessors = new int[stateCount], position = Arrays.copyOf(offsets, stateCount);
+        for (int i = 0; i < stateCount; ++i) predecessors[position[transitions[i * symbolCount + symbol]]++] = i;
+
+        offsetsBySymbol[symbol] = offsets;
+        predecessorsBySymbol[symbol] = predecessors;
+    }
+
+    private boolean isAccepting(int state)
+    {
+        return state != sink && dfa.isAccepting(originalIds[state]);
+    }
+
+    private void initPartition()
+    {
+        final int symbolCount = dfa.symbolCount();
+        elements = new int[stateCount];
+        location = new int[stateCount];
+        blockOf = new int[stateCount];
+        blockStart = new int[stateCount];
+        blockEnd = new int[stateCount];
+        marked = new int[stateCount];
+        worklist = new int[Math.max(1, stateCount * symbolCount)];
+        inWorklist = new boolean[Math.max(1, stateCount * symbolCount)];
+
+        int acceptingCount = 0;
+        for (int i = 0; i < stateCount; ++i)
+            if (isAccepting(i)) elements[acceptingCount++] = i;
+        int next = acceptingCount;
+        for (int i = 0; i < stateCount; ++i)
+            if (!isAccepting(i)) elements[next++] = i;
+
+        for (int i = 0; i < stateCount; ++i)
+        {
+            location[elements[i]] = i;
+            blockOf[elements[i]] = acceptingCount == 0 || i < acceptingCount ? 0 : 1;
+        }
+
+        blockCount = acceptingCount == 0 || acceptingCount == stateCount ? 1 : 2;
+        blockStart[0] = 0;
+        blockEnd[0] = blockCount == 1 ? stateCount : acceptingCount;
+        if (blockCount == 2)
+        {
+            blockStart[1] = acceptingCount;
+            blockEnd[1] = stateCount;
+        }
+
+        int smaller = blockCount == 2 && stateCount - acceptingCount < acceptingCount ? 1 : 0;
+        if (blockCount == 2)
+            for (int symbol = 0; symbol < symbolCount; ++symbol) push(smaller * symbolCount + symbol);
+    }
+
+    private void split(int block, int symbolCount)
+    {
+        int count = marked[block];
+        marked[block] = 0;
+        if (count == blockEnd[block] - blockStart[block]) return;
+
+        // The marked states, at the start of the block, form the new block
+        int newBlock = blockCount++;
+        blockStart[newBlock] = blockStart[block];
+        blockEnd[newBlock] = blockStart[block] + count;
+        blockStart[block] += count;
+        for (int i = blockStart[newBlock]; i < blockEnd[newBlock]; ++i) blockOf[elements[i]] = newBlock;
+
+        int smaller = blockEnd[newBlock] - blockStart[newBlock] <= blockEnd[block] - blockStart[block] ? newBlock : block;
+        for (int symbol = 0; symbol < symbolCount; ++symbol)
+            push((inWorklist[block * symbolCount + symbol] ? newBlock : smaller) * symbolCount + symbol);
+    }
+
+    private void push(int entry)
+    {
+        if (inWorklist[entry]) return;
+        inWorklist[entry] = true;
+        worklist[worklistSize++] = entry;
+    }
+
+    private void swap(int i, int j)
+    {
+        int a = elements[i], b = elements[j];
+        elements[i] = b;
+        elements[j] = a;
+        location[b] = i;
+        location[a] = j;
+    }
+
+    /**
+     * Build the minimized DFA, each block being named after its state with the lowest id in the original DFA
+     * (or the initial state for the initial block)
+     */
+    private DFA.Minimization createResult(int[] transitions)
+    {
+        final int symbolCount = dfa.symbolCount();
+        int initialBlock = blockOf[0];
+        int removedBlock = sink == DFA.NO_STATE || blockOf[sink] == initialBlock ? DFA.NO_STATE : blockOf[sink];
+
+        // Blocks are numbered in the order of their representatives, the initial one first
+        int[] newIds = new int[blockCount], representatives = new int[blockCount];
+        Arrays.fill(newIds, DFA.NO_STATE);
+        newIds[initialBlock] = 0;
+        representatives[initialBlock] = 0;
+        int newCount = 1;
+        for (int original = 0; original < dfa.stateCount(); ++original)
+        {
+            int state = reachableIds[original];
+            if (state == DFA.NO_STATE) continue;
+
+            int block = blockOf[state];
+            if (newIds[block] == DFA.NO_STATE && block != removedBlock)
+            {
+                newIds[block] = newCount++;
+                representatives[block] = state;
+            }
+        }
+
+        String[] names = new String[newCount];
+        char[] symbols = new char[symbolCount];
+        int[] newTransitions = new int[newCount * symbolCount];
+        long[] accepting = new long[DFA.wordCount(newCount)];
+        for (int i = 0; i < symbolCount; ++i) symbols[i] = dfa.symbol(i);
+
+        for (int block = 0; block < blockCount; ++block)
+        {
+            int id = newIds[block], state = representatives[block];
+            if (id == DFA.NO_STATE) continue;
+
+            names[id] = dfa.stateName(originalIds[state]);
+            if (isAccepting(state)) DFA.setBit(accepting, id);
+
+            for (int symbol = 0; symbol < symbolCount; ++symbol)
+                newTransitions[id * symbolCount + symbol] = newIds[blockOf[transitions[state * symbolCount + symbol]]];
+        }
+
+        Map<String, String> mapping = new HashMap<>();
+        for (int state = 0; state < stateCount; ++state)
+            if (state != sink && newIds[blockOf[state]] != DFA.NO_STATE)
+                mapping.put(dfa.stateName(originalIds[state]), names[newIds[blockOf[state]]]);
+
+        return new DFA.Minimization(new DFA(names, symbols, newTransitions, accepting, 0), mapping);
+    }
+}
@@ -3,9 +3,11 @@ package ch.ludovic_mermod.dfasimulator.logic;
 import ch.ludovic_mermod.dfasimulator.gui.MainPane;
 import javafx.beans.property.*;
 import javafx.collections.FXCollections;
-import javafx.collections.ObservableSet;
 import javafx.util.Pair;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -16,6 +18,7 @@ public class Simulation
 {
     private final FiniteAutomaton finiteAutomaton;
     private final MainPane        mainPane;
+    private final DFAValidator    validator;
 
     private final SetProperty<Pair<State, State>> currentLinksProperty;
     private final SetProperty<State>              currentStatesProperty;
@@ -27,13 +30,40 @@ public class Simulation
     private final BooleanProperty resultProperty;
     private final BooleanProperty simulationEndedProperty;
 
+    // DFA compiled from the last snapshot of the automaton, compiled again when the snapshot changes
+    private Automaton dfaSnapshot;
+    private DFA       dfa;
+    // Same for the NFA used by the step by step simulation
+    private Automaton nfaSnapshot;
+    private NFA       nfa;
+
+    private State[] compiledStates;
+    private long[]  activeStates, previousStates;
+    private String  input;
+    private int     position;
+    private long    printedChangeCount;
+
     /**
      * Construct a Simulation for a given MainPane
      */
     public Simulation(MainPane mainPane)
     {
-        finiteAutomaton = mainPane.getFiniteAutomaton();
+        this(mainPane.getFiniteAutomaton(), mainPane);
+    }
+    /**
+     * Construct a Simulation for an automaton that is not displayed
+     * Errors are not printed, as there is no ConsolePane
+     */
+    public Simulation(FiniteAutomaton finiteAutomaton)
+    {
+        this(finiteAutomaton, null);
+    }
+    private Simulation(FiniteAutomaton finiteAutomaton, MainPane mainPane)
+    {
+        this.finiteAutomaton = finiteAutomaton;
         this.mainPane = mainPane;
+        validator = new DFAValidator(finiteAutomaton);
+        printedChangeCount = -1;
 
         currentStatesProperty = new SimpleSetProperty<>(FXCollections.observableSet(new HashSet<>()));
         currentLinksProperty = new SimpleSetProperty<>(FXCollections.observableSet(new HashSet<>()));
@@ -47,8 +77,29 @@ public class Simulation
 
     private void updateResult()
     {
-        if (currentStatesProperty.get() != null)
-            resultProperty.set(currentStatesProperty.get().stream().anyMatch(State::isAccepting) && simulationEndedProperty.get());
+        resultProperty.set(nfa != null && nfa.containsAccepting(activeStates) && simulationEndedProperty.get());
+    }
+
+    /**
+     * Update the observable sets from the engine, only called when the graph needs to be redrawn
+     *
+     * @param c the last character read, its transitions from the previous states are highlighted
+     */
+    private void publishStates(char c)
+    {
+        Set<State> states = new HashSet<>();
+        NFA.forEach(activeStates, i -> states.add(compiledStates[i]));
+
+        Set<Pair<State, State>> links = new HashSet<>();
+        int symbol = nfa.symbolIndex(c);
+        if (symbol != DFA.NO_STATE)
+            NFA.forEach(previousStates, i -> {
+                for (int target : nfa.successors(i, symbol))
+                    links.add(new Pair<>(compiledStates[i], compiledStates[target]));
+            });
+
+        currentStatesProperty.set(FXCollections.observableSet(states));
+        currentLinksProperty.set(FXCollections.observableSet(links));
     }
 
     public ReadOnlySetProperty<State> currentStateProperty()
@@ -88,28 +139,7 @@ public class Simulation
      */
     public List<Error> checkDFA()
     {
-        List<Error> errors = new ArrayList<>();
-        Set<Character> alphabet = finiteAutomaton.alphabet();
-
-        for (State state : finiteAutomaton.states())
-        {
-            List<Character> elements = state.transitionMap().entrySet().stream().filter(e -> e.getValue().get() != null).map(Map.Entry::getKey).toList();
-
-            if (elements.size() != alphabet.size())
-            {
-                if (elements.size() < alphabet.size())
-                {
-                    var missingElements = new TreeSet<>(alphabet);
-                    elements.forEach(missingElements::remove);
-                    errors.add(new Error(ErrorCode.NODE_DOES_NOT_MATCH_ALPHABET, new Object[]{state, false, missingElements}));
-                }
-                else
-                    errors.add(new Error(ErrorCode.NODE_DOES_NOT_MATCH_ALPHABET, new Object[]{state, true}));
-            }
-        }
-
-        errors.addAll(checkInitialState());
-        return errors;
+        return validator.errors();
     }
 
     /**
@@ -146,25 +176,32 @@ public class Simulation
 
     /**
      * Lists all design errors and prints them to the ConsolePane
+     * They are only printed again if they changed since the last call
      *
      * @return whether the DFA is valid
      */
     public boolean compileDFA()
     {
-        var errors = checkDFA();
-        printErrors(errors);
-        return errors.isEmpty();
+        if (validator.changeCount() != printedChangeCount)
+        {
+            printErrors(checkDFA());
+            printedChangeCount = validator.changeCount();
+        }
+        return validator.isValid();
     }
 
     public boolean compileNFA()
     {
         var errors = checkNFA();
         printErrors(errors);
+        printedChangeCount = -1;
         return errors.isEmpty();
     }
 
     private void printErrors(Collection<Error> errors)
     {
+        if (mainPane == null) return;
+
         mainPane.getConsolePane().clear();
         errors.forEach(e ->
         {
@@ -195,6 +232,7 @@ public class Simulation
 
     /**
      * Start a simulation
+     * The automaton is compiled once, the following steps run on the compiled NFA
      *
      * @param input the input of the simulation
      */
@@ -205,6 +243,15 @@ public class Simulation
         currentLinksProperty.clear();
         currentStatesProperty.clear();
 
+        // The ids of the snapshot follow the order of the states
+        nfa = compiledNFA();
+        compiledStates = finiteAutomaton.states().toArray(new State[0]);
+        activeStates = nfa.newStateSet();
+        previousStates = nfa.newStateSet();
+        nfa.initial(activeStates);
+        this.input = input;
+        position = 0;
+
         isSimulatingProperty.set(true);
         simulationEndedProperty.set(false);
         currentLinksProperty.set(null);
@@ -218,7 +265,7 @@ public class Simulation
      */
     public void nextSimulationStep()
     {
-        if (remainingInputProperty.get().length() == 0)
+        if (position == input.length())
         {
             currentLinksProperty.set(FXCollections.observableSet(new HashSet<>()));
             currentStatesProperty.set(FXCollections.observableSet(new HashSet<>()));
@@ -226,23 +273,16 @@ public class Simulation
             return;
         }
 
-        String input = remainingInputProperty.get();
-        char c = input.charAt(0);
-        remainingInputProperty.set(input.substring(1));
-
-        ObservableSet<State> newStates = FXCollections.observableSet(new HashSet<>());
-        ObservableSet<Pair<State, State>> newLinks = FXCollections.observableSet(new HashSet<>());
-        currentStatesProperty.forEach(source -> {
-            if (source.transitionMap().getValue(c) != null)
-                source.transitionMap().getValue(c).forEach(target -> {
-                    newStates.add(target);
-                    newLinks.add(new Pair<>(source, target));
-                });
-        });
-        currentStatesProperty.set(newStates);
-        currentLinksProperty.set(newLinks);
+        char c = input.charAt(position++);
+        long[] tmp = previousStates;
+        previousStates = activeStates;
+        activeStates = tmp;
+        nfa.step(previousStates, c, activeStates);
+
+        remainingInputProperty.set(input.substring(position));
+        publishStates(c);
 
-        if (remainingInputProperty.get().length() == 0)
+        if (position == input.length())
         {
             simulationEndedProperty.set(true);
             updateResult();
@@ -250,21 +290,19 @@ public class Simulation
     }
 
     /**
-     * Analyse all remaining characters one by one
+     * Analyse all remaining characters at once
+     * The intermediate states are not displayed, only the last step is
      */
     public void finish()
     {
         if (!isSimulatingProperty.get()) return;
 
-        nextSimulationStep();
-        new Timer().schedule(new TimerTask()
+        if (input.length() - position > 1)
         {
-            @Override
-            public void run()
-            {
-                finish();
-            }
-        }, 1000);
+            nfa.run(activeStates, CharBuffer.wrap(input, position, input.length() - 1), previousStates);
+            position = input.length() - 1;
+        }
+        nextSimulationStep();
     }
 
     /**
@@ -275,12 +313,74 @@ public class Simulation
      */
     public boolean test(String input)
     {
-        if (!compileDFA()) return false;
+        return compileDFA() && compiledDFA().isAccepted(input);
+    }
+    /**
+     * Test whether an input is accepted, reading it in chunks so that it never needs to be held in memory
+     *
+     * @param input the input to test, it is not closed
+     * @return whether the input is accepted
+     * @throws IOException if the reader throws one
+     */
+    public boolean test(Reader input) throws IOException
+    {
+        return compileDFA() && compiledDFA().isAccepted(input);
+    }
+
+    /**
+     * Test whether each input of a batch is accepted
+     * The automaton is validated and compiled once for the whole batch, and nothing is printed to the ConsolePane
+     *
+     * @param inputs the inputs to test
+     * @return a BitSet where the bit i is set if the i-th input is accepted (empty if the automaton is not a valid DFA)
+     */
+    public BitSet testAll(Iterable<? extends CharSequence> inputs)
+    {
+        BitSet result = new BitSet();
+        if (!validator.isValid()) return result;
 
-        State currentState = finiteAutomaton.initialState();
-        for (char c : input.toCharArray()) currentState = currentState.transitionMap().getValue(c).get(0);
+        DFA dfa = compiledDFA();
+        int i = 0;
+        for (CharSequence input : inputs)
+        {
+            if (dfa.isAccepted(input)) result.set(i);
+            ++i;
+        }
 
-        return currentState.isAccepting();
+        return result;
+    }
+
+    /**
+     * The DFA is built from the snapshot of the automaton, and kept until the automaton changes
+     * It is immutable, so it can be given to background workers
+     *
+     * @return the compiled automaton, only valid if compileDFA returns true
+     */
+    public DFA compiledDFA()
+    {
+        Automaton snapshot = finiteAutomaton.snapshot();
+        if (snapshot != dfaSnapshot)
+        {
+            dfa = DFA.fromAutomaton(snapshot);
+            dfaSnapshot = snapshot;
+        }
+        return dfa;
+    }
+
+    /**
+     * The NFA is built from the snapshot of the automaton, and kept until the automaton changes
+     *
+     * @return the compiled automaton, only valid if compileNFA returns true
+     */
+    private NFA compiledNFA()
+    {
+        Automaton snapshot = finiteAutomaton.snapshot();
+        if (snapshot != nfaSnapshot)
+        {
+            nfa = NFA.fromAutomaton(snapshot);
+            nfaSnapshot = snapshot;
+        }
+        return nfa;
     }
 
     public enum ErrorCode
@@ -10,12 +10,17 @@ import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.property.StringProperty;
 import javafx.beans.value.ObservableValue;
 
+import java.util.Collection;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
 
 public class State
 {
+    /**
+     * Key of the ε-transitions in the transition map, it cannot be part of the alphabet
+     */
+    public static final char EPSILON = 'ε';
+
     protected static final String JSON_TRANSITION_MAP = "transition_map";
     protected static final String JSON_IS_ACCEPTING   = "is_accepting";
     protected static final String JSON_NAME           = "name";
@@ -23,20 +28,33 @@ public class State
     private final JSONObject jsonObject;
 
     private final StringProperty  name;
-    private final BooleanBinding  isInitialBinding;
     private final BooleanProperty isAcceptingProperty;
 
     private final PropertiesMap<Character, List<State>> transitionMapProperty;
 
-    private final Node            node;
     private final FiniteAutomaton finiteAutomaton;
 
+    // Only created when needed, so that a State that is not displayed does not hold any view or binding
+    private BooleanBinding isInitialBinding;
+    private Node           node;
+
     /**
      * Construct a State for a finite automaton
      *
      * @param finiteAutomaton the parent automaton
      */
     public State(FiniteAutomaton finiteAutomaton)
+    {
+        this(finiteAutomaton, finiteAutomaton.alphabet());
+    }
+    /**
+     * Construct a State with an entry for each symbol of the given alphabet
+     * It does not read the automaton, so that States can be created outside of the FX thread before being added
+     *
+     * @param finiteAutomaton the parent automaton
+     * @param alphabet        the symbols of the transition map
+     */
+    State(FiniteAutomaton finiteAutomaton, Collection<Character> alphabet)
     {
         this.finiteAutomaton = finiteAutomaton;
         jsonObject = new JSONObject();
@@ -45,26 +63,11 @@ public class State
         isAcceptingProperty = new SimpleBooleanProperty(this, JSON_IS_ACCEPTING, false);
         transitionMapProperty = new PropertiesMap<>();
 
-        isInitialBinding = new BooleanBinding()
-        {
-            {
-                super.bind(finiteAutomaton.initialStateProperty(), name);
-            }
-
-            @Override
-            protected boolean computeValue()
-            {
-                return finiteAutomaton.initialState() != null && name().equals(finiteAutomaton.initialState().name());
-            }
-        };
-
-        node = new Node(this, finiteAutomaton.getMainPane().getGraphPane());
-
         jsonObject.addProperty(JSON_NAME, name);
         jsonObject.addProperty(JSON_IS_ACCEPTING, isAcceptingProperty);
         jsonObject.add(JSON_TRANSITION_MAP, new JSONObject());
 
-        finiteAutomaton.alphabet().forEach(transitionMapProperty::get);
+        alphabet.forEach(transitionMapProperty::get);
 
         transitionMapProperty.addListener((p, k, o, n) ->
         {
@@ -84,48 +87,6 @@ public class State
         transitionMapProperty.addListener((k, p) -> jsonObject.getAsJSONObject(JSON_TRANSITION_MAP).remove(String.valueOf(k)));
     }
 
-    /**
-     * Creates a State from a JSONObject
-     * The transition map is not loaded, it must be with the loadTransitionMap method
-     *
-     * @param jsonObject      the jsonObject containing the information for the state
-     * @param finiteAutomaton the parent automaton
-     * @return the new State
-     * @throws IOManager.CorruptedFileException when the jsonObject does not hold the correct values
-     */
-    public static State fromJSONObject(JSONObject jsonObject, FiniteAutomaton finiteAutomaton) throws IOManager.CorruptedFileException
-    {
-        jsonObject.checkHasString(JSON_NAME);
-        jsonObject.checkHasBoolean(JSON_IS_ACCEPTING);
-        jsonObject.checkHasObject(JSON_TRANSITION_MAP);
-
-        State state = new State(finiteAutomaton);
-        state.name.set(jsonObject.get(JSON_NAME).getAsString());
-        state.isAcceptingProperty.set(jsonObject.get(JSON_IS_ACCEPTING).getAsBoolean());
-        return state;
-    }
-
-    /**
-     * Load a transition map from a jsonObject
-     *
-     * @param jsonObject a jsonObject containing the transition map
-     * @throws IOManager.CorruptedFileException when the jsonObject is invalid
-     */
-    public void loadTransitionMap(JSONObject jsonObject) throws IOManager.CorruptedFileException
-    {
-        for (Map.Entry<String, JSONElement> e : jsonObject.entrySet())
-        {
-            String key = e.getKey();
-
-            if (key.length() != 1
-                || !jsonObject.has(key)
-                || !(jsonObject.get(key).isJSONNull() || jsonObject.hasArray(key)))
-                throw new IOManager.CorruptedFileException("Could not parse \"%s\" into a transition map", jsonObject);
-
-            transitionMapProperty.setValue(key.charAt(0), e.getValue().isJSONNull() ? List.of() : e.getValue().getAsJSONArray().stream().map(j -> finiteAutomaton.getState(j.getAsString())).toList());
-        }
-    }
-
     public JSONElement getJSONObject()
     {
         return jsonObject;
@@ -141,8 +102,28 @@ public class State
     }
     public BooleanBinding isInitialBinding()
     {
+        if (isInitialBinding == null)
+            isInitialBinding = new BooleanBinding()
+            {
+                {
+                    super.bind(finiteAutomaton.initialStateProperty(), name);
+                }
+
+                @Override
+                protected boolean computeValue()
+                {
+                    return isInitial();
+                }
+            };
         return isInitialBinding;
     }
+    /**
+     * @return whether this State is the initial state of its automaton
+     */
+    public boolean isInitial()
+    {
+        return finiteAutomaton.initialState() != null && name().equals(finiteAutomaton.initialState().name());
+    }
     public BooleanProperty isAcceptingProperty()
     {
         return isAcceptingProperty;
@@ -155,9 +136,26 @@ public class State
     {
         return transitionMapProperty;
     }
+    /**
+     * @return the targets of the ε-transitions of this State (empty if there is none)
+     */
+    public List<State> epsilonTransitions()
+    {
+        if (!transitionMapProperty.containsKey(EPSILON)) return List.of();
 
+        List<State> targets = transitionMapProperty.getValue(EPSILON);
+        return targets == null ? List.of() : targets;
+    }
+
+    /**
+     * The Node is created on the first call, so that only the States that are displayed have one
+     *
+     * @return the Node displaying this State, or null if the automaton is not displayed
+     */
     public Node getNode()
     {
+        if (node == null && finiteAutomaton.getMainPane() != null)
+            node = new Node(this, finiteAutomaton.getMainPane().getGraphPane());
         return node;
     }
 
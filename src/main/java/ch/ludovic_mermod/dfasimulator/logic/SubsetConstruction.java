@@ -0,0 +1,181 @@
+package ch.ludovic_mermod.dfasimulator.logic;
+
+import java.util.Arrays;
+import java.util.StringJoiner;
+
+/**
+ * Determinize an NFA with the subset construction
+ * <p>
+ * Each subset of NFA states is interned once: its sorted ids are stored in a single int pool, and found again through an
+ * open-addressing hash table of subset ids, so a subset costs a few ints per member instead of a bitset over all states.
+ * Subsets are explored in the order they are discovered, which makes the pool itself the worklist.
+ * The empty subset is not interned, it becomes a missing transition of the DFA.
+ */
+class SubsetConstruction
+{
+    private static final int FREE = -1;
+
+    private final NFA nfa;
+    private final int maxStates;
+
+    private int[] pool;
+    private int   poolSize;
+    private int[] subsetOffsets;
+    private int   subsetCount;
+    private int[] table;
+    private int[] transitions;
+
+    private final int[] scratch;
+
+    SubsetConstruction(NFA nfa, int maxStates)
+    {
+        this.nfa = nfa;
+        this.maxStates = maxStates;
+
+        pool = new int[64];
+        subsetOffsets = new int[17];
+        table = new int[32];
+        Arrays.fill(table, FREE);
+        transitions = new int[16 * Math.max(1, nfa.symbolCount())];
+        scratch = new int[nfa.stateCount()];
+    }
+
+    /**
+     * Run the construction
+     *
+     * @return the DFA, whose state i is the i-th subset discovered (the initial one being 0)
+     * @throws DFA.TooManyStatesException if more than maxStates subsets are reachable
+     */
+    DFA run() throws DFA.TooManyStatesException
+    {
+        final int symbolCount = nfa.symbolCount();
+        long[] current = nfa.newStateSet(), next = nfa.newStateSet();
+
+        nfa.initial(current);
+        intern(current);
+
+        for (int subset = 0; subset < subsetCount; ++subset)
+        {
+            Arrays.fill(current, 0);
+            for (int k = subsetOffsets[subset]; k < subsetOffsets[subset + 1]; ++k)
+                DFA.setBit(current, pool[k]);
+
+            for (int symbol = 0; symbol < symbolCount; ++symbol)
+            {
+                int target = nfa.step(current, nfa.symbol(symbol), next) ? intern(next) : DFA.NO_STATE;
+                transitions[subset * symbolCount + symbol] = target;
+            }
+        }
+
+        return createDFA();
+    }
+
+    /**
+     * @param set a non-empty state set
+     * @return the id of the subset, a new one if it was not interned yet
+     */
+    private int intern(long[] set) throws DFA.TooManyStatesException
+    {
+        int size = 0, hash = 1;
+        for (int w = 0; w < set.length; ++w)
+            for (long word = set[w]; word != 0; word &= word - 1)
+            {
+                int state = (w << 6) + Long.numberOfTrailingZeros(word);
+                scratch[size++] = state;
+                hash = 31 * hash + state;
+            }
+
+        int mask = table.length - 1;
+        for (int slot = mix(hash) & mask; ; slot = (slot + 1) & mask)
+        {
+            int subset = table[slot];
+            if (subset == FREE)
+            {
+                subset = add(size);
+                table[slot] = subset;
+                if (subsetCount * 2 > table.length) rehash();
+                return subset;
+            }
+            if (Arrays.equals(pool, subsetOffsets[subset], subsetOffsets[subset + 1], scratch, 0, size)) return subset;
+        }
+    }
+
+    private int add(int size) throws DFA.TooManyStatesException
+    {
+        if (subsetCount == maxStates) throw new DFA.TooManyStatesException(maxStates);
+
+        if (poolSize + size > pool.length) pool = Arrays.copyOf(pool, Math.max(pool.length * 2, poolSize + size));
+        System.arraycopy(scratch, 0, pool, poolSize, size);
+        poolSize += size;
+
+        if (subsetCount + 2 > subsetOffsets.length) subsetOffsets = Arrays.copyOf(subsetOffsets, subsetOffsets.length * 2);
+        subsetOffsets[subsetCount + 1] = poolSize;
+
+        long tableSize = (long) (subsetCount + 1) * nfa.symbolCount();
+        if (tableSize > Integer.MAX_VALUE) throw new DFA.TooManyStatesException(subsetCount);
+        if (tableSize > transitions.length) transitions = Arrays.copyOf(transitions, (int) Math.min(Integer.MAX_VALUE, tableSize * 2));
+
+        return subsetCount++;
+    }
+
+    private void rehash()
+    {
+        int[] newTable = new int[table.length * 2];
+        Arrays.fill(newTable, FREE);
+        int mask = newTable.length - 1;
+
+        for (int subset = 0; subset < subsetCount; ++subset)
+        {
+            int hash = 1;
+            for (int k = subsetOffsets[subset]; k < subsetOffsets[subset + 1]; ++k) hash = 31 * hash + pool[k];
+
+            int slot = mix(hash) & mask;
+            while (newTable[slot] != FREE) slot = (slot + 1) & mask;
+            newTable[slot] = subset;
+        }
+
+        table = newTable;
+    }
+
+    private static int mix(int hash)
+    {
+        hash *= 0x9E3779B9;
+        return hash ^ hash >>> 16;
+    }
+
+    private DFA createDFA()
+    {
+        final int symbolCount = nfa.symbolCount();
+
+        String[] names = new String[subsetCount];
+        long[] accepting = new long[DFA.wordCount(subsetCount)];
+        for (int subset = 0; subset < subsetCount; ++subset)
+        {
+            names[subset] = name(subset);
+            for (int k = subsetOffsets[subset]; k < subsetOffsets[subset + 1]; ++k)
+                if (nfa.isAccepting(pool[k]))
+                {
+                    DFA.setBit(accepting, subset);
+                    break;
+                }
+        }
+
+        char[] symbols = new char[symbolCount];
+        for (int i = 0; i < symbolCount; ++i) symbols[i] = nfa.symbol(i);
+
+        return new DFA(names, symbols, Arrays.copyOf(transitions, subsetCount * symbolCount), accepting, 0);
+    }
+
+    /**
+     * Small subsets are named after their members, larger ones after their id, so that names stay short
+     */
+    private String name(int subset)
+    {
+        int from = subsetOffsets[subset], to = subsetOffsets[subset + 1];
+        if (to - from > 4) return "q" + subset;
+
+        StringJoiner joiner = new StringJoiner(", ", "{", "}");
+        for (int k = from; k < to; ++k) joiner.add(nfa.stateName(pool[k]));
+        return joiner.toString();
+    }
+}
@@ -0,0 +1,88 @@
+package ch.ludovic_mermod.dfasimulator.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Replace the content of a file atomically
+ * <p>
+ * The content is written to a temporary file next to the target, which then replaces it, so that the file is never left
+ * partially written. A symbolic link is followed, so that the file it points to is replaced and the link kept, and the
+ * POSIX permissions of an existing file are kept. A new file gets the default permissions (from the umask).
+ * This class does not depend on JavaFX, so that it can be used by the headless classes.
+ */
+public class AtomicFile
+{
+    private AtomicFile() {}
+
+    /**
+     * Write a file through a temporary file
+     *
+     * @param path    the file to write
+     * @param content writes the content of the file to the given stream, which is buffered and closed afterwards
+     * @throws IOException if the file cannot be written, it is then left unchanged
+     */
+    public static void write(Path path, Content content) throws IOException
+    {
+        Path target = Files.exists(path) ? path.toRealPath() : path.toAbsolutePath();
+        Path temp = createSibling(target);
+        try
+        {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp, StandardOpenOption.WRITE)))
+            {
+                content.writeTo(out);
+            }
+
+            if (Files.exists(target) && target.getFileSystem().supportedFileAttributeViews().contains("posix"))
+                Files.setPosixFilePermissions(temp, Files.getPosixFilePermissions(target));
+
+            try
+            {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (AtomicMoveNotSupportedException e)
+            {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        finally
+        {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Create an empty file next to the target, unlike Files.createTempFile it gets the default permissions and not 0600
+     */
+    private static Path createSibling(Path target) throws IOException
+    {
+        while (true)
+        {
+            Path temp = target.resolveSibling(target.getFileName() + "." + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+            try
+            {
+                Files.newOutputStream(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE).close();
+                return temp;
+            }
+            catch (FileAlreadyExistsException ignored)
+            {
+            }
+        }
+    }
+
+    /**
+     * Content of a file
+     */
+    @FunctionalInterface
+    public interface Content
+    {
+        /**
+         * @param out the stream to write the content to
+         * @throws IOException if the stream throws one
+         */
+        void writeTo(OutputStream out) throws IOException;
+    }
+}
@@ -10,6 +10,7 @@ import javafx.collections.ObservableMap;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 
 /**
@@ -84,7 +85,9 @@ public class PropertiesMap<K, V> implements ObservableMap<K, ObjectProperty<V>>
         {
             V oldValue = map.get(key).getValue();
             map.get(key).set(value);
-            propertyChangeListeners.forEach(l -> l.onValueChange(map.get(key), key, oldValue, value));
+            // The property already notified the listeners if the value changed, they are notified of the others once
+            if (Objects.equals(oldValue, value))
+                propertyChangeListeners.forEach(l -> l.onValueChange(map.get(key), key, oldValue, value));
         }
         else put(key, new SimpleObjectProperty<>(value));
         return map.get(key);
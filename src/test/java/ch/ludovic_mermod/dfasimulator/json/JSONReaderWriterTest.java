@@ -0,0 +1,96 @@
+package ch.ludovic_mermod.dfasimulator.json;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JSONReaderWriterTest
+{
+    private static final String ESCAPED   = "quote \" backslash \\ slash / \n\r\t\b\f \u0000\u0001\u001f \u007f";
+    private static final String SURROGATE = "emoji 😀, clef 𝄞";
+
+    /**
+     * Parse through a Reader returning a single character at a time, so that every token crosses a buffer boundary
+     */
+    private static JSONElement parseSlowly(String json) throws IOException
+    {
+        Reader slow = new FilterReader(new StringReader(json))
+        {
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException
+            {
+                return super.read(buffer, offset, Math.min(length, 1));
+            }
+        };
+        try (JSONReader reader = new JSONReader(slow))
+        {
+            return reader.read();
+        }
+    }
+
+    private static JSONObject document()
+    {
+        JSONObject object = new JSONObject();
+        object.addProperty("escaped", ESCAPED);
+        object.addProperty("surrogate", SURROGATE);
+        object.addProperty(ESCAPED, "key with escapes");
+        object.addProperty("integer", 42);
+        object.addProperty("real", -1.5);
+        object.addProperty("boolean", true);
+        object.add("null", JSONNull.INSTANCE);
+
+        JSONArray array = new JSONArray();
+        array.add(SURROGATE);
+        array.add(new JSONObject());
+        array.add(new JSONArray());
+        object.add("array", array);
+        return object;
+    }
+
+    @Test
+    void roundTrip() throws IOException
+    {
+        String json = JSONWriter.toString(document());
+
+        JSONObject parsed = JSONReader.parse(json).getAsJSONObject();
+        assertEquals(ESCAPED, parsed.getAsJSONPrimitive("escaped").getAsString());
+        assertEquals(SURROGATE, parsed.getAsJSONPrimitive("surrogate").getAsString());
+        assertEquals("key with escapes", parsed.getAsJSONPrimitive(ESCAPED).getAsString());
+        assertEquals(SURROGATE, parsed.getAsJSONArray("array").get(0).getAsString());
+        assertEquals(json, JSONWriter.toString(parsed));
+        assertEquals(json, JSONWriter.toString(parseSlowly(json)));
+    }
+
+    @Test
+    void escapesControlCharacters()
+    {
+        String json = JSONWriter.toString(new JSONPrimitive("\u0000\u001f\n\"\\"));
+
+        assertEquals("\"\\u0000\\u001f\\n\\\"\\\\\"", json);
+    }
+
+    @Test
+    void readsEscapedSurrogatePairs() throws IOException
+    {
+        String json = "[\"\\uD83D\\uDE00\", \"\\ud834\\udd1e\"]";
+
+        assertEquals("😀", JSONReader.parse(json).getAsJSONArray().get(0).getAsString());
+        assertEquals("𝄞", parseSlowly(json).getAsJSONArray().get(1).getAsString());
+    }
+
+    @Test
+    void roundTripLongStrings()
+    {
+        // Longer than the buffer of JSONReader, with escapes and surrogate pairs around its boundaries
+        StringBuilder builder = new StringBuilder();
+        while (builder.length() < 3 * 8192) builder.append("abc\"\\\n").append(SURROGATE);
+        String string = builder.toString();
+
+        assertEquals(string, JSONReader.parse(JSONWriter.toString(new JSONPrimitive(string))).getAsString());
+    }
+}
@@ -0,0 +1,86 @@
+package ch.ludovic_mermod.dfasimulator.logic;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Build Automatons for the tests, without going through a FiniteAutomaton
+ */
+final class Automata
+{
+    private Automata() {}
+
+    /**
+     * @param symbols   the sorted symbols of the alphabet
+     * @param targets   for each state, the targets of each symbol then of ε
+     * @param accepting the ids of the accepting states
+     * @param initial   the id of the initial state, or NO_STATE
+     * @return the automaton, its states being named q0, q1...
+     */
+    static Automaton of(char[] symbols, int[][][] targets, int[] accepting, int initial)
+    {
+        final int stateCount = targets.length, columns = symbols.length + 1;
+        String[] names = new String[stateCount];
+        int[] offsets = new int[stateCount * columns + 1];
+        List<Integer> flatTargets = new ArrayList<>();
+        for (int state = 0; state < stateCount; ++state)
+        {
+            names[state] = "q" + state;
+            for (int column = 0; column < columns; ++column)
+            {
+                for (int target : targets[state][column]) flatTargets.add(target);
+                offsets[state * columns + column + 1] = flatTargets.size();
+            }
+        }
+
+        long[] acceptingSet = new long[DFA.wordCount(stateCount)];
+        for (int state : accepting) DFA.setBit(acceptingSet, state);
+
+        return new Automaton(names, symbols, offsets, flatTargets.stream().mapToInt(Integer::intValue).toArray(), acceptingSet, initial);
+    }
+
+    /**
+     * @param random     the source of randomness
+     * @param stateCount the number of states
+     * @param symbols    the sorted symbols of the alphabet
+     * @param density    the probability of each possible transition, ε-transitions included
+     * @return a random automaton, with q0 as initial state
+     */
+    static Automaton random(Random random, int stateCount, char[] symbols, double density)
+    {
+        int[][][] targets = new int[stateCount][symbols.length + 1][];
+        List<Integer> accepting = new ArrayList<>();
+        for (int state = 0; state < stateCount; ++state)
+        {
+            if (random.nextBoolean()) accepting.add(state);
+            for (int column = 0; column <= symbols.length; ++column)
+            {
+                List<Integer> columnTargets = new ArrayList<>();
+                for (int target = 0; target < stateCount; ++target)
+                    if (random.nextDouble() < density) columnTargets.add(target);
+                targets[state][column] = columnTargets.stream().mapToInt(Integer::intValue).toArray();
+            }
+        }
+
+        return of(symbols, targets, accepting.stream().mapToInt(Integer::intValue).toArray(), 0);
+    }
+
+    /**
+     * @param symbols   the symbols to use
+     * @param maxLength the maximum length of the words
+     * @return all words over the symbols, up to maxLength characters, the empty word included
+     */
+    static List<String> words(char[] symbols, int maxLength)
+    {
+        List<String> words = new ArrayList<>(List.of(""));
+        for (int start = 0, length = 1; length <= maxLength; ++length)
+        {
+            int end = words.size();
+            for (int i = start; i < end; ++i)
+                for (char c : symbols) words.add(words.get(i) + c);
+            start = end;
+        }
+        return words;
+    }
+}
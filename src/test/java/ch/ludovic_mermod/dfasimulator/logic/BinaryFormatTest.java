@@ -0,0 +1,149 @@
+package ch.ludovic_mermod.dfasimulator.logic;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryFormatTest
+{
+    private static final char[] SYMBOLS = {'0', '1', 'é', '€'};
+
+    @TempDir
+    Path directory;
+
+    private static Automaton automaton()
+    {
+        return Automata.random(new Random(0), 20, SYMBOLS, 0.1);
+    }
+    private static BinaryFormat.Layout layout()
+    {
+        double[] nodePositions = new double[2 * 20];
+        for (int i = 0; i < nodePositions.length; ++i) nodePositions[i] = i * 1.5;
+        nodePositions[6] = nodePositions[7] = Double.NaN;
+        return new BinaryFormat.Layout(nodePositions, new int[] {0, 1, 3, 2}, new double[] {1, 2, -3, 4.5}, new int[] {5}, new double[] {10, 20, 30});
+    }
+    private static byte[] write(Automaton automaton, BinaryFormat.Layout layout) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes))
+        {
+            BinaryFormat.write(out, automaton, layout);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void assertSameAutomaton(Automaton expected, Automaton actual)
+    {
+        assertEquals(expected.stateCount(), actual.stateCount());
+        assertEquals(expected.symbolCount(), actual.symbolCount());
+        assertEquals(expected.initialIndex(), actual.initialIndex());
+        for (int symbol = 0; symbol < expected.symbolCount(); ++symbol) assertEquals(expected.symbol(symbol), actual.symbol(symbol));
+
+        for (int state = 0; state < expected.stateCount(); ++state)
+        {
+            assertEquals(expected.stateName(state), actual.stateName(state));
+            assertEquals(expected.isAccepting(state), actual.isAccepting(state), expected.stateName(state));
+            for (int symbol = 0; symbol <= expected.symbolCount(); ++symbol)
+                assertArrayEquals(expected.targets(state, symbol), actual.targets(state, symbol), expected.stateName(state));
+        }
+    }
+
+    @Test
+    void roundTrip() throws IOException, IOManager.CorruptedFileException
+    {
+        Automaton automaton = automaton();
+        BinaryFormat.Content content = BinaryFormat.read(ByteBuffer.wrap(write(automaton, null)));
+
+        assertSameAutomaton(automaton, content.automaton());
+        assertNull(content.layout());
+    }
+
+    @Test
+    void roundTripWithLayout() throws IOException, IOManager.CorruptedFileException
+    {
+        Automaton automaton = automaton();
+        BinaryFormat.Layout layout = layout();
+        BinaryFormat.Content content = BinaryFormat.read(ByteBuffer.wrap(write(automaton, layout)));
+
+        assertSameAutomaton(automaton, content.automaton());
+        assertArrayEquals(layout.nodePositions(), content.layout().nodePositions());
+        assertArrayEquals(layout.edges(), content.layout().edges());
+        assertArrayEquals(layout.controlPoints(), content.layout().controlPoints());
+        assertArrayEquals(layout.selfEdges(), content.layout().selfEdges());
+        assertArrayEquals(layout.selfEdgeShapes(), content.layout().selfEdgeShapes());
+    }
+
+    @Test
+    void roundTripThroughAFile() throws IOException, IOManager.CorruptedFileException
+    {
+        Automaton automaton = automaton();
+        Path path = directory.resolve("automaton" + BinaryFormat.EXTENSION);
+        BinaryFormat.write(path, automaton, layout());
+
+        assertTrue(BinaryFormat.isBinary(path));
+        assertSameAutomaton(automaton, BinaryFormat.read(path).automaton());
+        assertSameAutomaton(automaton, BinaryFormat.readMapped(path).automaton());
+
+        // The file is not kept open, so it can be replaced
+        BinaryFormat.write(path, automaton, null);
+        assertNull(BinaryFormat.read(path).layout());
+    }
+
+    @Test
+    void keepsThePermissionsOfTheFile() throws IOException
+    {
+        if (!FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) return;
+
+        Path path = directory.resolve("automaton" + BinaryFormat.EXTENSION);
+        BinaryFormat.write(path, automaton(), null);
+        assertEquals(Files.getPosixFilePermissions(Files.createFile(directory.resolve("plain"))), Files.getPosixFilePermissions(path));
+
+        Files.setPosixFilePermissions(path, PosixFilePermissions.fromString("rw-rw-r--"));
+        BinaryFormat.write(path, automaton(), layout());
+        assertEquals("rw-rw-r--", PosixFilePermissions.toString(Files.getPosixFilePermissions(path)));
+    }
+
+    @Test
+    void rejectsTruncatedFiles() throws IOException
+    {
+        byte[] bytes = write(automaton(), layout());
+        for (int length = 0; length < bytes.length; ++length)
+        {
+            ByteBuffer truncated = ByteBuffer.wrap(Arrays.copyOf(bytes, length));
+            assertThrows(IOManager.CorruptedFileException.class, () -> BinaryFormat.read(truncated), length + " bytes");
+        }
+    }
+
+    @Test
+    void rejectsABadMagic() throws IOException
+    {
+        byte[] bytes = write(automaton(), null);
+        bytes[0] = 'X';
+        Path path = Files.write(directory.resolve("automaton.json"), bytes);
+
+        assertFalse(BinaryFormat.isBinary(path));
+        IOManager.CorruptedFileException exception = assertThrows(IOManager.CorruptedFileException.class, () -> BinaryFormat.read(path));
+        assertEquals("Not a binary automaton", exception.getMessage());
+    }
+
+    @Test
+    void rejectsAnUnsupportedVersion() throws IOException
+    {
+        byte[] bytes = write(automaton(), null);
+        bytes[4] = 2;
+
+        assertThrows(IOManager.CorruptedFileException.class, () -> BinaryFormat.read(ByteBuffer.wrap(bytes)));
+    }
+}
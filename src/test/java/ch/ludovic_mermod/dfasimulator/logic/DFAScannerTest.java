@@ -0,0 +1,134 @@
+package ch.ludovic_mermod.dfasimulator.logic;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DFAScannerTest
+{
+    /**
+     * Even number of a, over an ASCII alphabet: the files are scanned byte by byte
+     */
+    private static final DFA BYTE_DFA    = new DFA("even", Set.of("even", "odd"), Set.of("even"), Set.of('a', 'b'),
+            Map.of("even", Map.of('a', "odd", 'b', "even"), "odd", Map.of('a', "even", 'b', "odd")));
+    /**
+     * Same language, é is in the alphabet but never leads to an accepting state: the files are decoded
+     */
+    private static final DFA DECODED_DFA = new DFA("even", Set.of("even", "odd"), Set.of("even"), Set.of('a', 'b', 'é'),
+            Map.of("even", Map.of('a', "odd", 'b', "even"), "odd", Map.of('a', "even", 'b', "odd")));
+
+    @TempDir
+    Path directory;
+
+    private Path file(String content) throws IOException
+    {
+        return Files.writeString(Files.createTempFile(directory, "input", ".txt"), content, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Scan the lines of the content in both modes, and check the accepted lines and the number of lines
+     */
+    private void assertLines(String content, long lines, Long... accepted) throws IOException
+    {
+        Path path = file(content);
+        for (DFAScanner scanner : List.of(new DFAScanner(BYTE_DFA), new DFAScanner(DECODED_DFA)))
+        {
+            String mode = scanner.isByteMode() ? "byte mode" : "decoded mode";
+            List<Long> acceptedLines = new ArrayList<>();
+            DFAScanner.ScanResult result = scanner.scanLines(path, acceptedLines::add);
+
+            assertEquals(List.of(accepted), acceptedLines, mode);
+            assertEquals(lines, result.inputs(), mode);
+            assertEquals(accepted.length, result.accepted(), mode);
+            assertEquals(Files.size(path), result.bytes(), mode);
+        }
+    }
+
+    @Test
+    void selectsTheMode()
+    {
+        assertTrue(new DFAScanner(BYTE_DFA).isByteMode());
+        assertFalse(new DFAScanner(DECODED_DFA).isByteMode());
+        assertFalse(new DFAScanner(BYTE_DFA, StandardCharsets.UTF_16).isByteMode());
+    }
+
+    @Test
+    void stripsTheCarriageReturnOfCRLF() throws IOException
+    {
+        assertLines("aa\r\nb\r\na\r\n", 3, 0L, 1L);
+    }
+
+    @Test
+    void keepsALoneCarriageReturnInTheLine() throws IOException
+    {
+        // \r is not in the alphabet, so the first line is rejected instead of being split in two accepted lines
+        assertLines("aa\rb\n\nb", 3, 1L, 2L);
+        assertLines("aa\r\rb\n", 1);
+    }
+
+    @Test
+    void stripsACarriageReturnAtTheEnd() throws IOException
+    {
+        assertLines("ab\nbb\r", 2, 1L);
+        assertLines("\r", 1, 0L);
+    }
+
+    @Test
+    void countsEmptyLines() throws IOException
+    {
+        assertLines("", 0);
+        assertLines("\n", 1, 0L);
+        assertLines("\n\n\r\n", 3, 0L, 1L, 2L);
+    }
+
+    @Test
+    void countsAnUnterminatedLastLine() throws IOException
+    {
+        assertLines("aa\nb", 2, 0L, 1L);
+        assertLines("aa\na", 2, 0L);
+    }
+
+    @Test
+    void rejectsNonASCIICharacters() throws IOException
+    {
+        assertLines("aa\né\nab\nbéb\nbb\n€", 6, 0L, 4L);
+    }
+
+    @Test
+    void scansWholeFiles() throws IOException
+    {
+        for (DFAScanner scanner : List.of(new DFAScanner(BYTE_DFA), new DFAScanner(DECODED_DFA)))
+        {
+            assertEquals(1, scanner.scanFile(file("abba")).accepted());
+            assertEquals(0, scanner.scanFile(file("ab\nb")).accepted());
+            assertEquals(1, scanner.scanFile(file("")).accepted());
+        }
+    }
+
+    @Test
+    void stopsScanningAfterADeadPrefix() throws IOException
+    {
+        // Nothing starting with b is accepted by a*, the rest of the file does not need to be read
+        DFA dfa = new DFA("q", Set.of("q"), Set.of("q"), Set.of('a', 'b'), Map.of("q", Map.of('a', "q")));
+        DFA decodedDfa = new DFA("q", Set.of("q"), Set.of("q"), Set.of('a', 'b', 'é'), Map.of("q", Map.of('a', "q")));
+        Path path = file("b" + "a".repeat(1 << 20));
+
+        DFAScanner.ScanResult result = new DFAScanner(dfa).scanFile(path);
+        assertEquals(0, result.accepted());
+        assertEquals(1, result.bytes());
+
+        result = new DFAScanner(decodedDfa).scanFile(path);
+        assertEquals(0, result.accepted());
+        assertTrue(result.bytes() < Files.size(path));
+    }
+}
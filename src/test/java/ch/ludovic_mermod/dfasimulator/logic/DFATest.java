@@ -0,0 +1,156 @@
+package ch.ludovic_mermod.dfasimulator.logic;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DFATest
+{
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Even number of a, the other symbols (one to four bytes in UTF-8, the last one being a surrogate pair) are ignored
+     */
+    private static final DFA EVEN_A = new DFA("even", Set.of("even", "odd"), Set.of("even"), Set.of('a', 'é', '€', '\uD83D', '\uDE00'), Map.of(
+            "even", Map.of('a', "odd", 'é', "even", '€', "even", '\uD83D', "even", '\uDE00', "even"),
+            "odd", Map.of('a', "even", 'é', "odd", '€', "odd", '\uD83D', "odd", '\uDE00', "odd")));
+
+    /**
+     * Channel returning the bytes of an array, at most maxRead at a time, and counting the bytes read
+     */
+    private static class ArrayChannel implements ReadableByteChannel
+    {
+        private final byte[] bytes;
+        private final int    maxRead;
+        private       int    position;
+
+        ArrayChannel(byte[] bytes, int maxRead)
+        {
+            this.bytes = bytes;
+            this.maxRead = maxRead;
+        }
+
+        @Override
+        public int read(ByteBuffer buffer)
+        {
+            if (position == bytes.length) return -1;
+            int length = Math.min(Math.min(maxRead, buffer.remaining()), bytes.length - position);
+            buffer.put(bytes, position, length);
+            position += length;
+            return length;
+        }
+        @Override
+        public boolean isOpen()
+        {
+            return true;
+        }
+        @Override
+        public void close()
+        {
+        }
+    }
+
+    private static void assertStreamsAgree(String input) throws IOException
+    {
+        boolean expected = EVEN_A.isAccepted(input);
+        byte[] utf8 = input.getBytes(StandardCharsets.UTF_8);
+        String message = input.length() > 20 ? input.length() + " characters" : "\"" + input + "\"";
+
+        assertEquals(expected, EVEN_A.isAccepted(new StringReader(input)), message);
+        assertEquals(expected, EVEN_A.isAccepted(new ByteArrayInputStream(utf8), StandardCharsets.UTF_8), message);
+        assertEquals(expected, EVEN_A.isAccepted(new ArrayChannel(utf8, 7), StandardCharsets.UTF_8), message);
+        assertEquals(expected, EVEN_A.isAccepted(new ArrayChannel(input.getBytes(StandardCharsets.UTF_16), 3), StandardCharsets.UTF_16), message);
+    }
+
+    @Test
+    void streamsAgreeWithCharSequences() throws IOException
+    {
+        // b is not in the alphabet, it is made rare so that most inputs are read until their end
+        final String[] symbols = {"a", "a", "é", "€", "😀", "a", "é", "€", "😀", "b"};
+        Random random = new Random(0);
+        for (int i = 0; i < 500; ++i)
+        {
+            StringBuilder builder = new StringBuilder();
+            int length = i % 50 == 0 ? BUFFER_SIZE + random.nextInt(BUFFER_SIZE) : random.nextInt(20);
+            while (builder.length() < length)
+            {
+                int index = random.nextInt(symbols.length);
+                if (index != symbols.length - 1 || random.nextInt(10) == 0) builder.append(symbols[index]);
+            }
+            assertStreamsAgree(builder.toString());
+        }
+    }
+
+    @Test
+    void decodesCharactersSplitAcrossTheBuffer() throws IOException
+    {
+        for (String c : new String[] {"é", "€", "😀"})
+            for (int prefix = BUFFER_SIZE - 4; prefix <= BUFFER_SIZE; ++prefix)
+            {
+                String input = "a".repeat(prefix) + c + "a";
+                byte[] utf8 = input.getBytes(StandardCharsets.UTF_8);
+
+                assertEquals(EVEN_A.isAccepted(input), EVEN_A.isAccepted(new ByteArrayInputStream(utf8), StandardCharsets.UTF_8), c + " after " + prefix);
+                assertEquals(EVEN_A.isAccepted(input), EVEN_A.isAccepted(Channels.newChannel(new ByteArrayInputStream(utf8)), StandardCharsets.UTF_8), c + " after " + prefix);
+            }
+    }
+
+    @Test
+    void throwsOnMalformedInput()
+    {
+        byte[] invalid = {'a', 'a', (byte) 0xFF, 'a', 'a'};
+        byte[] truncated = {'a', 'a', (byte) 0xC3};
+        byte[] lateInvalid = ("a".repeat(3 * BUFFER_SIZE) + "\u0000").getBytes(StandardCharsets.UTF_8);
+        lateInvalid[lateInvalid.length - 1] = (byte) 0x80;
+
+        for (byte[] bytes : new byte[][] {invalid, truncated, lateInvalid})
+        {
+            assertThrows(CharacterCodingException.class, () -> EVEN_A.isAccepted(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8));
+            assertThrows(CharacterCodingException.class, () -> EVEN_A.isAccepted(new ArrayChannel(bytes, 5), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void stopsReadingAfterADeadPrefix() throws IOException
+    {
+        // b is not in the alphabet, so nothing starting with it is accepted
+        String input = "b" + "a".repeat(16 * BUFFER_SIZE);
+
+        ArrayChannel channel = new ArrayChannel(input.getBytes(StandardCharsets.UTF_8), Integer.MAX_VALUE);
+        assertFalse(EVEN_A.isAccepted(channel, StandardCharsets.UTF_8));
+        assertTrue(channel.position <= BUFFER_SIZE);
+
+        int[] read = {0};
+        Reader reader = new FilterReader(new StringReader(input))
+        {
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException
+            {
+                int n = super.read(buffer, offset, length);
+                if (n > 0) read[0] += n;
+                return n;
+            }
+        };
+        assertFalse(EVEN_A.isAccepted(reader));
+        assertTrue(read[0] <= BUFFER_SIZE);
+    }
+
+    @Test
+    void acceptsEmptyStreams() throws IOException
+    {
+        for (Charset charset : new Charset[] {StandardCharsets.UTF_8, StandardCharsets.UTF_16})
+            assertTrue(EVEN_A.isAccepted(new ByteArrayInputStream(new byte[0]), charset));
+        assertTrue(EVEN_A.isAccepted(new StringReader("")));
+    }
+}
@@ -0,0 +1,76 @@
+package ch.ludovic_mermod.dfasimulator.logic;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LineReaderTest
+{
+    private static List<String> lines(Reader reader) throws IOException
+    {
+        List<String> lines = new ArrayList<>();
+        try (LineReader lineReader = new LineReader(reader))
+        {
+            for (String line; (line = lineReader.readLine()) != null; ) lines.add(line);
+        }
+        return lines;
+    }
+
+    /**
+     * Read the lines both at once and one character at a time, so that each separator also crosses a buffer boundary
+     */
+    private static void assertLines(String input, String... expected) throws IOException
+    {
+        Reader slow = new FilterReader(new StringReader(input))
+        {
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException
+            {
+                return super.read(buffer, offset, Math.min(length, 1));
+            }
+        };
+
+        assertEquals(List.of(expected), lines(new StringReader(input)));
+        assertEquals(List.of(expected), lines(slow));
+    }
+
+    @Test
+    void splitsOnLineFeeds() throws IOException
+    {
+        assertLines("a\nb\n", "a", "b");
+        assertLines("a\r\nb\r\n", "a", "b");
+        assertLines("a\r\r\n", "a\r");
+        assertLines("a\rb\n", "a\rb");
+    }
+
+    @Test
+    void readsTheLastLine() throws IOException
+    {
+        assertLines("a\nb", "a", "b");
+        assertLines("a\nb\r", "a", "b");
+        assertLines("a\n\r", "a", "");
+    }
+
+    @Test
+    void readsEmptyLines() throws IOException
+    {
+        assertLines("");
+        assertLines("\n", "");
+        assertLines("\n\r\n\n", "", "", "");
+    }
+
+    @Test
+    void readsLinesLongerThanTheBuffer() throws IOException
+    {
+        String line = "x".repeat(8191) + "\r";
+
+        assertLines(line + "\n" + line + "\n", line.substring(0, 8191), line.substring(0, 8191));
+    }
+}
@@ -0,0 +1,100 @@
+package ch.ludovic_mermod.dfasimulator.logic;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PartitionRefinementTest
+{
+    private static final char[] AB = {'a', 'b'};
+
+    private static DFA dfa(int[] transitions, int... accepting)
+    {
+        String[] names = new String[transitions.length / AB.length];
+        for (int i = 0; i < names.length; ++i) names[i] = "q" + i;
+        BitSet acceptingSet = new BitSet();
+        for (int state : accepting) acceptingSet.set(state);
+        return DFA.fromTable(names, AB, transitions, acceptingSet, 0);
+    }
+
+    private static boolean isComplete(DFA dfa)
+    {
+        for (int state = 0; state < dfa.stateCount(); ++state)
+            for (int symbol = 0; symbol < dfa.symbolCount(); ++symbol)
+                if (dfa.next(state, symbol) == DFA.NO_STATE) return false;
+        return true;
+    }
+
+    @Test
+    void mergesEquivalentStates()
+    {
+        // Number of a modulo 4, accepting when even
+        DFA dfa = dfa(new int[] {1, 0, 2, 1, 3, 2, 0, 3}, 0, 2);
+        DFA minimal = dfa.minimize().dfa();
+
+        assertEquals(2, minimal.stateCount());
+        for (String word : Automata.words(AB, 6)) assertEquals(dfa.isAccepted(word), minimal.isAccepted(word), word);
+    }
+
+    @Test
+    void removesUnreachableStates()
+    {
+        // q2 is only reachable from itself
+        DFA.Minimization minimization = dfa(new int[] {1, 0, 0, 1, 2, 2}, 1, 2).minimize();
+
+        assertEquals(2, minimization.dfa().stateCount());
+        assertFalse(minimization.stateMapping().containsKey("q2"));
+    }
+
+    @Test
+    void removesDeadStatesOfPartialDFAs()
+    {
+        // q2 and q3 cannot reach q0, b is missing from q0 and q1
+        DFA dfa = dfa(new int[] {1, DFA.NO_STATE, 0, DFA.NO_STATE, 3, 2, 2, 3}, 0);
+        DFA minimal = dfa.minimize().dfa();
+
+        assertEquals(2, minimal.stateCount());
+        assertFalse(isComplete(minimal));
+    }
+
+    @Test
+    void keepsOneDeadStateInCompleteDFAs()
+    {
+        // Same language, b goes to the dead states q2 and q3
+        DFA dfa = dfa(new int[] {1, 2, 0, 3, 3, 2, 2, 3}, 0);
+        DFA minimal = dfa.minimize().dfa();
+
+        assertEquals(3, minimal.stateCount());
+        assertTrue(isComplete(minimal));
+        for (String word : Automata.words(AB, 6)) assertEquals(dfa.isAccepted(word), minimal.isAccepted(word), word);
+    }
+
+    @Test
+    void keepsADeadInitialState()
+    {
+        DFA minimal = dfa(new int[] {1, DFA.NO_STATE, 0, 1}).minimize().dfa();
+
+        assertEquals(1, minimal.stateCount());
+        assertFalse(minimal.isAccepted(""));
+        assertFalse(minimal.isAccepted("ab"));
+    }
+
+    @Test
+    void minimizesRandomDFAs() throws DFA.TooManyStatesException
+    {
+        Random random = new Random(0);
+        for (int i = 0; i < 200; ++i)
+        {
+            DFA dfa = DFA.fromNFA(NFA.fromAutomaton(Automata.random(random, 1 + random.nextInt(8), AB, 0.25)), DFA.DEFAULT_MAX_STATES);
+            DFA minimal = dfa.minimize().dfa();
+
+            assertTrue(minimal.stateCount() <= dfa.stateCount(), "automaton " + i);
+            assertEquals(minimal.stateCount(), minimal.minimize().dfa().stateCount(), "automaton " + i);
+            for (String word : Automata.words(AB, 7))
+                assertEquals(dfa.isAccepted(word), minimal.isAccepted(word), "automaton " + i + ", \"" + word + "\"");
+        }
+    }
+}
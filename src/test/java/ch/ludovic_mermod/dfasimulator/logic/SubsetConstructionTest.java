@@ -0,0 +1,77 @@
+package ch.ludovic_mermod.dfasimulator.logic;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SubsetConstructionTest
+{
+    private static final char[] AB = {'a', 'b'};
+
+    /**
+     * NFA accepting the words whose n-th symbol from the end is an a, its DFA has 2^n states
+     */
+    private static NFA nthFromLast(int n)
+    {
+        int[][][] targets = new int[n + 1][][];
+        targets[0] = new int[][] {{0, 1}, {0}, {}};
+        for (int state = 1; state < n; ++state) targets[state] = new int[][] {{state + 1}, {state + 1}, {}};
+        targets[n] = new int[][] {{}, {}, {}};
+        return NFA.fromAutomaton(Automata.of(AB, targets, new int[] {n}, 0));
+    }
+
+    @Test
+    void acceptsTheSameInputsAsTheNFA() throws DFA.TooManyStatesException
+    {
+        Random random = new Random(0);
+        for (int i = 0; i < 200; ++i)
+        {
+            NFA nfa = NFA.fromAutomaton(Automata.random(random, 1 + random.nextInt(6), AB, 0.3));
+            DFA dfa = DFA.fromNFA(nfa, DFA.DEFAULT_MAX_STATES);
+
+            for (String word : Automata.words(AB, 7))
+                assertEquals(nfa.isAccepted(word), dfa.isAccepted(word), "automaton " + i + ", \"" + word + "\"");
+        }
+    }
+
+    @Test
+    void followsEpsilonTransitions() throws DFA.TooManyStatesException
+    {
+        // q0 -ε-> q1 -a-> q2 -ε-> q3, only q3 and q1 accept
+        int[][][] targets = {{{}, {}, {1}}, {{2}, {}, {}}, {{}, {}, {3}}, {{}, {3}, {}}};
+        DFA dfa = DFA.fromNFA(NFA.fromAutomaton(Automata.of(AB, targets, new int[] {1, 3}, 0)), DFA.DEFAULT_MAX_STATES);
+
+        assertTrue(dfa.isAccepted(""));
+        assertTrue(dfa.isAccepted("a"));
+        assertTrue(dfa.isAccepted("abbb"));
+        assertFalse(dfa.isAccepted("b"));
+        assertFalse(dfa.isAccepted("aa"));
+    }
+
+    @Test
+    void doesNotCreateTheEmptySubset() throws DFA.TooManyStatesException
+    {
+        int[][][] targets = {{{1}, {}, {}}, {{}, {}, {}}};
+        DFA dfa = DFA.fromNFA(NFA.fromAutomaton(Automata.of(AB, targets, new int[] {1}, 0)), DFA.DEFAULT_MAX_STATES);
+
+        assertEquals(2, dfa.stateCount());
+        assertEquals(DFA.NO_STATE, dfa.next(dfa.initialIndex(), dfa.symbolIndex('b')));
+    }
+
+    @Test
+    void createsOnlyTheReachableSubsets() throws DFA.TooManyStatesException
+    {
+        assertEquals(1 << 5, DFA.fromNFA(nthFromLast(5), DFA.DEFAULT_MAX_STATES).stateCount());
+    }
+
+    @Test
+    void throwsWhenTheDFAHasTooManyStates()
+    {
+        NFA nfa = nthFromLast(5);
+
+        assertThrows(DFA.TooManyStatesException.class, () -> DFA.fromNFA(nfa, (1 << 5) - 1));
+        assertDoesNotThrow(() -> DFA.fromNFA(nfa, 1 << 5));
+    }
+}
@@ -0,0 +1,102 @@
+package ch.ludovic_mermod.dfasimulator.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AtomicFileTest
+{
+    private static final boolean POSIX = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+
+    @TempDir
+    Path directory;
+
+    private static void write(Path path, String content) throws IOException
+    {
+        AtomicFile.write(path, out -> out.write(content.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void replacesTheContent() throws IOException
+    {
+        Path path = directory.resolve("file.json");
+        write(path, "first");
+        write(path, "second");
+
+        assertEquals("second", Files.readString(path));
+        try (var files = Files.list(directory))
+        {
+            assertEquals(List.of(path), files.toList());
+        }
+    }
+
+    @Test
+    void keepsThePermissions() throws IOException
+    {
+        if (!POSIX) return;
+
+        Path path = Files.writeString(directory.resolve("file.json"), "first");
+        Files.setPosixFilePermissions(path, PosixFilePermissions.fromString("rw-r-----"));
+        write(path, "second");
+
+        assertEquals("rw-r-----", PosixFilePermissions.toString(Files.getPosixFilePermissions(path)));
+    }
+
+    @Test
+    void doesNotRestrictTheDefaultPermissions() throws IOException
+    {
+        if (!POSIX) return;
+
+        // A plain new file gets the default permissions, the atomically written one must get the same
+        Path expected = Files.createFile(directory.resolve("plain.json"));
+        Path path = directory.resolve("file.json");
+        write(path, "content");
+
+        assertEquals(Files.getPosixFilePermissions(expected), Files.getPosixFilePermissions(path));
+    }
+
+    @Test
+    void keepsSymbolicLinks() throws IOException
+    {
+        Path target = Files.writeString(directory.resolve("target.json"), "first");
+        Path link;
+        try
+        {
+            link = Files.createSymbolicLink(directory.resolve("link.json"), target);
+        }
+        catch (UnsupportedOperationException | IOException e)
+        {
+            return;
+        }
+        write(link, "second");
+
+        assertTrue(Files.isSymbolicLink(link));
+        assertEquals("second", Files.readString(target));
+    }
+
+    @Test
+    void leavesTheFileUnchangedOnError() throws IOException
+    {
+        Path path = Files.writeString(directory.resolve("file.json"), "first");
+
+        assertThrows(IOException.class, () -> AtomicFile.write(path, out ->
+        {
+            out.write('x');
+            throw new IOException("Failure");
+        }));
+        assertEquals("first", Files.readString(path));
+        try (var files = Files.list(directory))
+        {
+            assertEquals(1, files.count());
+        }
+    }
+}